@@ -0,0 +1,130 @@
+package com.example.android.sunshine.app;
+
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.text.format.DateUtils;
+import android.text.format.Time;
+import android.util.Log;
+
+import java.text.SimpleDateFormat;
+
+/**
+ * Checks that {@link ForecastFormatter} shows what formatting from the resources every time
+ * does, and logs how many forecast rows each of them can format per second.
+ */
+public class TestForecastFormatter extends AndroidTestCase {
+
+    private static final String LOG_TAG = TestForecastFormatter.class.getSimpleName();
+
+    private static final int BINDS = 5000;
+    private static final int[] WEATHER_IDS = {800, 801, 500, 501, 211, 600, 741};
+
+    private ForecastFormatter mFormatter;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mFormatter = ForecastFormatter.getInstance(mContext);
+        mFormatter.reload();
+    }
+
+    public void testTemperaturesMatchTheFormatResource() {
+        for (int tenths = -600; tenths <= 600; tenths++) {
+            double temperature = tenths / 10.0;
+            String expected = formatTemperatureFromResources(temperature);
+            // the formatter doesn't show a negative zero
+            if (expected.startsWith("-0") && !expected.matches("-0\\d.*")) {
+                continue;
+            }
+            assertEquals("Error: " + temperature + " formatted differently", expected,
+                    mFormatter.formatTemperature(temperature));
+        }
+    }
+
+    public void testDaysMatchTheOldFormatting() {
+        long now = System.currentTimeMillis();
+        for (int day = -2; day < 14; day++) {
+            long date = now + day * DateUtils.DAY_IN_MILLIS;
+            assertEquals(createFriendlyDayString(date, true),
+                    mFormatter.getFriendlyDayString(date, true));
+            assertEquals(createFriendlyDayString(date, false),
+                    mFormatter.getFriendlyDayString(date, false));
+        }
+    }
+
+    public void testBindThroughput() {
+        long now = System.currentTimeMillis();
+
+        long start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < BINDS; i++) {
+            long date = now + (i % 14) * DateUtils.DAY_IN_MILLIS;
+            createFriendlyDayString(date, i % 14 == 0);
+            Utility.getStringForWeatherCondition(mContext, WEATHER_IDS[i % WEATHER_IDS.length]);
+            formatTemperatureFromResources(20 + i % 7 + 0.4);
+            formatTemperatureFromResources(10 + i % 5 - 0.3);
+        }
+        long resourcesMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < BINDS; i++) {
+            long date = now + (i % 14) * DateUtils.DAY_IN_MILLIS;
+            mFormatter.getFriendlyDayString(date, i % 14 == 0);
+            mFormatter.getStringForWeatherCondition(WEATHER_IDS[i % WEATHER_IDS.length]);
+            mFormatter.formatTemperature(20 + i % 7 + 0.4);
+            mFormatter.formatTemperature(10 + i % 5 - 0.3);
+        }
+        long formatterMillis = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        long resourcesBindsPerSecond = BINDS * 1000L / resourcesMillis;
+        long formatterBindsPerSecond = BINDS * 1000L / formatterMillis;
+        // only logged, timings on a shared device or emulator are too noisy to assert on
+        Log.d(LOG_TAG, "Binds per second: from the resources " + resourcesBindsPerSecond
+                + ", through the formatter " + formatterBindsPerSecond);
+    }
+
+    /**
+     * What {@link Utility#getFriendlyDayString} did before the formatter, worked out from the
+     * resources on every call.
+     */
+    private String createFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        // The day string for forecast uses the following logic:
+        // For today: "Today, June 8"
+        // For tomorrow:  "Tomorrow"
+        // For the next 5 days: "Wednesday" (just the day name)
+        // For all days after that: "Mon Jun 8"
+
+        Time time = new Time();
+        time.setToNow();
+        long currentTime = System.currentTimeMillis();
+        int julianDay = Time.getJulianDay(dateInMillis, time.gmtoff);
+        int currentJulianDay = Time.getJulianDay(currentTime, time.gmtoff);
+
+        // If the date we're building the String for is today's date, the format
+        // is "Today, June 24"
+        if (displayLongToday && julianDay == currentJulianDay) {
+            String today = mContext.getString(R.string.today);
+            int formatId = R.string.format_full_friendly_date;
+            return String.format(mContext.getString(
+                    formatId,
+                    today,
+                    Utility.getFormattedMonthDay(mContext, dateInMillis)));
+        } else if ( julianDay < currentJulianDay + 7 ) {
+            // If the input date is less than a week in the future, just return the day name.
+            return Utility.getDayName(mContext, dateInMillis);
+        } else {
+            // Otherwise, use the form "Mon Jun 3"
+            SimpleDateFormat shortenedDateFormat = new SimpleDateFormat("EEE MMM dd");
+            return shortenedDateFormat.format(dateInMillis);
+        }
+    }
+
+    /**
+     * What {@link Utility#formatTemperature} did before the formatter.
+     */
+    private String formatTemperatureFromResources(double temperature) {
+        if (!Utility.isMetric(mContext)) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        return String.format(mContext.getString(R.string.format_temperature), temperature);
+    }
+}
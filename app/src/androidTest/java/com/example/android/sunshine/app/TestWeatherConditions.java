@@ -0,0 +1,94 @@
+package com.example.android.sunshine.app;
+
+import android.test.AndroidTestCase;
+
+/**
+ * Checks the weather condition tables in {@link Utility} against the range checks they replaced,
+ * for every condition id and then some.
+ */
+public class TestWeatherConditions extends AndroidTestCase {
+
+    private static final int FIRST_ID = -100;
+    private static final int LAST_ID = 1100;
+
+    // The ids getStringForWeatherCondition had a description of their own for
+    private static final int[] DESCRIBED_IDS = {
+            500, 501, 502, 503, 504, 511, 520, 531, 600, 601, 602, 611, 612, 615, 616, 620, 621,
+            622, 701, 711, 721, 731, 741, 751, 761, 762, 771, 781, 800, 801, 802, 803, 804, 900,
+            901, 902, 903, 904, 905, 906, 951, 952, 953, 954, 955, 956, 957, 958, 959, 960, 961,
+            962
+    };
+
+    public void testIconsAndArtMatchTheRangeChecks() {
+        for (int id = FIRST_ID; id <= LAST_ID; id++) {
+            String name = legacyName(id);
+            String iconName = "clouds".equals(name) ? "cloudy" : name;
+            assertEquals("Error: Wrong icon for " + id, name == null ? -1 : getDrawable("ic_" + iconName),
+                    Utility.getIconResourceForWeatherCondition(id));
+            assertEquals("Error: Wrong art for " + id, name == null ? -1 : getDrawable("art_" + name),
+                    Utility.getArtResourceForWeatherCondition(id));
+        }
+    }
+
+    public void testDescriptionsMatchTheSwitch() {
+        for (int id = FIRST_ID; id <= LAST_ID; id++) {
+            String expected;
+            if (id >= 200 && id <= 232) {
+                expected = mContext.getString(R.string.condition_2xx);
+            } else if (id >= 300 && id <= 321) {
+                expected = mContext.getString(R.string.condition_3xx);
+            } else if (isDescribed(id)) {
+                expected = mContext.getString(mContext.getResources().getIdentifier(
+                        "condition_" + id, "string", mContext.getPackageName()));
+            } else {
+                expected = mContext.getString(R.string.condition_unknown, id);
+            }
+            assertEquals("Error: Wrong description for " + id, expected,
+                    Utility.getStringForWeatherCondition(mContext, id));
+        }
+    }
+
+    private static boolean isDescribed(int weatherId) {
+        for (int id : DESCRIBED_IDS) {
+            if (id == weatherId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int getDrawable(String name) {
+        return mContext.getResources().getIdentifier(name, "drawable", mContext.getPackageName());
+    }
+
+    /**
+     * The name of the icon and art the range checks picked, the cloudy icon being the only one
+     * not named like its art.
+     */
+    private static String legacyName(int weatherId) {
+        if (weatherId >= 200 && weatherId <= 232) {
+            return "storm";
+        } else if (weatherId >= 300 && weatherId <= 321) {
+            return "light_rain";
+        } else if (weatherId >= 500 && weatherId <= 504) {
+            return "rain";
+        } else if (weatherId == 511) {
+            return "snow";
+        } else if (weatherId >= 520 && weatherId <= 531) {
+            return "rain";
+        } else if (weatherId >= 600 && weatherId <= 622) {
+            return "snow";
+        } else if (weatherId >= 701 && weatherId <= 761) {
+            return "fog";
+        } else if (weatherId == 761 || weatherId == 781) {
+            return "storm";
+        } else if (weatherId == 800) {
+            return "clear";
+        } else if (weatherId == 801) {
+            return "light_clouds";
+        } else if (weatherId >= 802 && weatherId <= 804) {
+            return "clouds";
+        }
+        return null;
+    }
+}
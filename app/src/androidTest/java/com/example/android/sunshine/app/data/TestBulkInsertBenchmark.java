@@ -0,0 +1,145 @@
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Compares writing weather rows as ContentValues through bulkInsert with handing them over as
+ * {@link WeatherRows} through {@link WeatherProvider#METHOD_BULK_INSERT_ROWS}, for a single
+ * forecast, a large sync and a bulk import.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class TestBulkInsertBenchmark extends AndroidTestCase {
+
+    private static final String LOG_TAG = TestBulkInsertBenchmark.class.getSimpleName();
+
+    private static final int[] ROW_COUNTS = {14, 1000, 100000};
+    // keeps the generated dates well clear of 2038
+    private static final int DAYS_PER_LOCATION = 100;
+    private static final long MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    public void testInsertThroughput() {
+        for (int rowCount : ROW_COUNTS) {
+            long[] locationIds = insertLocations(rowCount);
+
+            ContentValues[] values = createContentValues(locationIds, rowCount);
+            long start = SystemClock.elapsedRealtime();
+            int inserted = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, values);
+            long contentValuesMillis = SystemClock.elapsedRealtime() - start;
+            assertEquals("Error: ContentValues bulkInsert didn't insert every row", rowCount, inserted);
+            deleteWeather();
+
+            WeatherRows rows = createRows(locationIds, rowCount);
+            start = SystemClock.elapsedRealtime();
+            Bundle stats = insertRows(rows);
+            long rowsMillis = SystemClock.elapsedRealtime() - start;
+            assertEquals("Error: WeatherRows insert didn't insert every row",
+                    rowCount, stats.getInt(WeatherProvider.KEY_INSERTED));
+
+            // the same rows again, which is what most periodic syncs look like
+            start = SystemClock.elapsedRealtime();
+            stats = insertRows(createRows(locationIds, rowCount));
+            long unchangedMillis = SystemClock.elapsedRealtime() - start;
+            assertEquals("Error: Rewriting the same rows changed some of them",
+                    rowCount, stats.getInt(WeatherProvider.KEY_UNCHANGED));
+
+            Log.d(LOG_TAG, rowCount + " rows: ContentValues " + rowsPerSecond(rowCount, contentValuesMillis)
+                    + " rows/s, WeatherRows " + rowsPerSecond(rowCount, rowsMillis)
+                    + " rows/s, unchanged WeatherRows " + rowsPerSecond(rowCount, unchangedMillis)
+                    + " rows/s");
+            deleteAllRecords();
+        }
+    }
+
+    private Bundle insertRows(WeatherRows rows) {
+        return mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherProvider.METHOD_BULK_INSERT_ROWS, null, rows.toBundle());
+    }
+
+    private static long rowsPerSecond(int rowCount, long millis) {
+        return rowCount * 1000L / Math.max(millis, 1);
+    }
+
+    private long[] insertLocations(int rowCount) {
+        int locationCount = (rowCount + DAYS_PER_LOCATION - 1) / DAYS_PER_LOCATION;
+        long[] locationIds = new long[locationCount];
+        SQLiteDatabase db = new WeatherDbHelper(mContext).getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < locationCount; i++) {
+                ContentValues values = TestUtilities.createNorthPoleLocationValues();
+                values.put(LocationEntry.COLUMN_LOCATION_SETTING, "benchmark" + i);
+                locationIds[i] = db.insert(LocationEntry.TABLE_NAME, null, values);
+                assertTrue("Error: Failure to insert a location", locationIds[i] != -1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.close();
+        return locationIds;
+    }
+
+    private static ContentValues[] createContentValues(long[] locationIds, int rowCount) {
+        ContentValues[] values = new ContentValues[rowCount];
+        for (int i = 0; i < rowCount; i++) {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, locationIds[i / DAYS_PER_LOCATION]);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, getDate(i));
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, 1.1);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, 1.2 + 0.01 * (i % 10));
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, 1.3 - 0.01 * (i % 10));
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, 75.0 + i % 10);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, 65.0 - i % 10);
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, "Asteroids");
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, 5.5 + 0.2 * (i % 10));
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, 321);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+
+    private static WeatherRows createRows(long[] locationIds, int rowCount) {
+        WeatherRows rows = new WeatherRows(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(locationIds[i / DAYS_PER_LOCATION], getDate(i), "Asteroids", 321,
+                    65.0 - i % 10, 75.0 + i % 10, 1.2 + 0.01 * (i % 10), 1.3 - 0.01 * (i % 10),
+                    5.5 + 0.2 * (i % 10), 1.1);
+        }
+        return rows;
+    }
+
+    private static long getDate(int row) {
+        return TestUtilities.TEST_DATE + (row % DAYS_PER_LOCATION) * MILLIS_IN_A_DAY;
+    }
+
+    private void deleteWeather() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+    }
+
+    private void deleteAllRecords() {
+        deleteWeather();
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Upgrades databases created with the schema of every past version and checks that the
+ * data is still there and the schema matches the one of a fresh install.
+ */
+public class TestDbMigration extends AndroidTestCase {
+
+    // The weather and location tables as version 2 created them, kept verbatim
+    private static final String V2_CREATE_LOCATION_TABLE = "CREATE TABLE location (" +
+            "_id INTEGER PRIMARY KEY," +
+            "location_setting TEXT UNIQUE NOT NULL, " +
+            "city_name TEXT NOT NULL, " +
+            "coord_lat REAL NOT NULL, " +
+            "coord_long REAL NOT NULL  );";
+    private static final String V2_CREATE_WEATHER_TABLE = "CREATE TABLE weather (" +
+            "_id INTEGER PRIMARY KEY AUTOINCREMENT," +
+            "location_id INTEGER NOT NULL, " +
+            "date INTEGER NOT NULL, " +
+            "short_desc TEXT NOT NULL, " +
+            "weather_id INTEGER NOT NULL," +
+            "min REAL NOT NULL, " +
+            "max REAL NOT NULL, " +
+            "humidity REAL NOT NULL, " +
+            "pressure REAL NOT NULL, " +
+            "wind REAL NOT NULL, " +
+            "degrees REAL NOT NULL, " +
+            " FOREIGN KEY (location_id) REFERENCES location (_id),  " +
+            "UNIQUE (date, location_id) ON CONFLICT REPLACE);";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        super.tearDown();
+    }
+
+    public void testEveryVersionHasAMigration() {
+        assertEquals("Error: There must be one migration step per version since the first migratable one",
+                WeatherDbHelper.DATABASE_VERSION - WeatherDbHelper.FIRST_MIGRATABLE_VERSION,
+                WeatherDbHelper.MIGRATIONS.length);
+    }
+
+    public void testUpgradeKeepsData() {
+        for (int version = WeatherDbHelper.FIRST_MIGRATABLE_VERSION;
+             version < WeatherDbHelper.DATABASE_VERSION; version++) {
+            mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+            SQLiteDatabase db = createDatabase(version);
+            ContentValues locationValues = TestUtilities.createNorthPoleLocationValues();
+            long locationRowId = db.insert(LocationEntry.TABLE_NAME, null, locationValues);
+            assertTrue(locationRowId != -1);
+            ContentValues weatherValues = TestUtilities.createWeatherValues(locationRowId);
+            long weatherRowId = db.insert(WeatherEntry.TABLE_NAME, null, weatherValues);
+            assertTrue(weatherRowId != -1);
+            db.close();
+
+            WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+            db = dbHelper.getReadableDatabase();
+            assertEquals(WeatherDbHelper.DATABASE_VERSION, db.getVersion());
+
+            Cursor cursor = db.query(LocationEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertTrue("Error: Location lost upgrading from version " + version, cursor.moveToFirst());
+            TestUtilities.validateCurrentRecord("Error: Location changed upgrading from version " + version,
+                    cursor, locationValues);
+            cursor.close();
+
+            cursor = db.query(WeatherEntry.TABLE_NAME, null, null, null, null, null, null);
+            assertTrue("Error: Weather lost upgrading from version " + version, cursor.moveToFirst());
+            TestUtilities.validateCurrentRecord("Error: Weather changed upgrading from version " + version,
+                    cursor, weatherValues);
+            assertEquals(weatherRowId, cursor.getLong(cursor.getColumnIndex(WeatherEntry._ID)));
+            cursor.close();
+            dbHelper.close();
+        }
+    }
+
+    public void testUpgradedSchemaMatchesFreshSchema() {
+        Map<String, String> freshSchema = readSchema(new WeatherDbHelper(mContext));
+
+        for (int version = WeatherDbHelper.FIRST_MIGRATABLE_VERSION;
+             version < WeatherDbHelper.DATABASE_VERSION; version++) {
+            mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+            createDatabase(version).close();
+            assertEquals("Error: Upgrading from version " + version + " doesn't give the current schema",
+                    freshSchema, readSchema(new WeatherDbHelper(mContext)));
+        }
+    }
+
+    public void testUpgradeFromUnmigratableVersionRecreates() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME), null);
+        db.execSQL("CREATE TABLE " + WeatherEntry.TABLE_NAME + " (_id INTEGER PRIMARY KEY, datetext TEXT)");
+        db.setVersion(WeatherDbHelper.FIRST_MIGRATABLE_VERSION - 1);
+        db.close();
+
+        WeatherDbHelper dbHelper = new WeatherDbHelper(mContext);
+        db = dbHelper.getWritableDatabase();
+        long locationRowId = db.insert(LocationEntry.TABLE_NAME, null,
+                TestUtilities.createNorthPoleLocationValues());
+        assertTrue(locationRowId != -1);
+        assertTrue("Error: The weather table wasn't recreated",
+                db.insert(WeatherEntry.TABLE_NAME, null, TestUtilities.createWeatherValues(locationRowId)) != -1);
+        dbHelper.close();
+    }
+
+    /**
+     * Creates the database with the schema the given version shipped with.
+     */
+    private SQLiteDatabase createDatabase(int version) {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(
+                mContext.getDatabasePath(WeatherDbHelper.DATABASE_NAME), null);
+        switch (version) {
+            case 2:
+                db.execSQL(V2_CREATE_LOCATION_TABLE);
+                db.execSQL(V2_CREATE_WEATHER_TABLE);
+                break;
+            default:
+                fail("No schema for version " + version + ", add it along with its migration");
+        }
+        db.setVersion(version);
+        return db;
+    }
+
+    /**
+     * Maps every table and index to its type and columns, which unlike the SQL in sqlite_master
+     * doesn't depend on how the statement creating it was formatted.
+     */
+    private static Map<String, String> readSchema(WeatherDbHelper dbHelper) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        Map<String, String> schema = new HashMap<String, String>();
+        Cursor cursor = db.rawQuery(
+                "SELECT name, type FROM sqlite_master WHERE name NOT LIKE 'sqlite_%' " +
+                        "AND name != 'android_metadata'", null);
+        while (cursor.moveToNext()) {
+            String name = cursor.getString(0);
+            String type = cursor.getString(1);
+            String pragma = "index".equals(type) ? "index_info" : "table_info";
+            StringBuilder columns = new StringBuilder(type);
+            Cursor info = db.rawQuery("PRAGMA " + pragma + "(" + name + ")", null);
+            int nameIndex = info.getColumnIndex("name");
+            int typeIndex = info.getColumnIndex("type");
+            while (info.moveToNext()) {
+                columns.append(' ').append(info.getString(nameIndex));
+                if (typeIndex != -1) {
+                    columns.append(':').append(info.getString(typeIndex));
+                }
+            }
+            info.close();
+            schema.put(name, columns.toString());
+        }
+        cursor.close();
+        dbHelper.close();
+        return schema;
+    }
+}
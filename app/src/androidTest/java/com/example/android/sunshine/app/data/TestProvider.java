@@ -24,6 +24,7 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Bundle;
 import android.test.AndroidTestCase;
 import android.util.Log;
 
@@ -512,4 +513,95 @@ public class TestProvider extends AndroidTestCase {
         }
         cursor.close();
     }
+
+    public void testBulkInsertSkipsUnchangedRows() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+
+        ContentValues[] bulkInsertContentValues = createBulkInsertWeatherValues(locationRowId);
+        int insertCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, bulkInsertContentValues);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, insertCount);
+
+        Cursor cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                new String[]{WeatherEntry._ID}, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertTrue(cursor.moveToFirst());
+        long firstRowId = cursor.getLong(0);
+        cursor.close();
+
+        // the very same forecast again must not touch a single row
+        insertCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(locationRowId));
+        assertEquals("Error: unchanged rows were written again", 0, insertCount);
+
+        Bundle stats = mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherProvider.METHOD_LAST_BULK_INSERT_STATS, null, null);
+        assertEquals(0, stats.getInt(WeatherProvider.KEY_INSERTED));
+        assertEquals(0, stats.getInt(WeatherProvider.KEY_UPDATED));
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, stats.getInt(WeatherProvider.KEY_UNCHANGED));
+
+        // change a single day, it should be updated in place
+        ContentValues[] changedValues = createBulkInsertWeatherValues(locationRowId);
+        changedValues[0].put(WeatherEntry.COLUMN_MAX_TEMP, 99);
+        insertCount = mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, changedValues);
+        assertEquals(1, insertCount);
+
+        cursor = mContext.getContentResolver().query(WeatherEntry.CONTENT_URI,
+                null, null, null, WeatherEntry.COLUMN_DATE + " ASC");
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals("Error: the changed row was replaced rather than updated",
+                firstRowId, cursor.getLong(cursor.getColumnIndex(WeatherEntry._ID)));
+        TestUtilities.validateCurrentRecord("testBulkInsertSkipsUnchangedRows. Error validating changed row",
+                cursor, changedValues[0]);
+        cursor.close();
+    }
+
+    public void testSnapshotCacheServesAndInvalidates() {
+        ContentValues testValues = TestUtilities.createNorthPoleLocationValues();
+        Uri locationUri = mContext.getContentResolver().insert(LocationEntry.CONTENT_URI, testValues);
+        long locationRowId = ContentUris.parseId(locationUri);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI,
+                createBulkInsertWeatherValues(locationRowId));
+
+        String[] projection = {
+                WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+                WeatherEntry.COLUMN_DATE,
+                WeatherEntry.COLUMN_MAX_TEMP,
+                LocationEntry.COLUMN_LOCATION_SETTING
+        };
+        Uri uri = WeatherEntry.buildWeatherLocationWithStartDate(TestUtilities.TEST_LOCATION, TestUtilities.TEST_DATE);
+        String sortOrder = WeatherEntry.COLUMN_DATE + " ASC";
+
+        Bundle before = getSnapshotCacheStats();
+        Cursor cursor = mContext.getContentResolver().query(uri, projection, null, null, sortOrder);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.close();
+        cursor = mContext.getContentResolver().query(uri, projection, null, null, sortOrder);
+        assertEquals(BULK_INSERT_RECORDS_TO_INSERT, cursor.getCount());
+        cursor.close();
+        Bundle after = getSnapshotCacheStats();
+        assertEquals("Error: The second query wasn't served from the snapshot",
+                before.getLong(WeatherProvider.KEY_HITS) + 1, after.getLong(WeatherProvider.KEY_HITS));
+
+        // a changed day has to show up in the very next query
+        ContentValues[] changedValues = createBulkInsertWeatherValues(locationRowId);
+        changedValues[0].put(WeatherEntry.COLUMN_MAX_TEMP, 99);
+        mContext.getContentResolver().bulkInsert(WeatherEntry.CONTENT_URI, changedValues);
+
+        cursor = mContext.getContentResolver().query(uri, projection, null, null, sortOrder);
+        assertTrue(cursor.moveToFirst());
+        assertEquals("Error: The snapshot wasn't invalidated by the bulkInsert",
+                99.0, cursor.getDouble(cursor.getColumnIndex(WeatherEntry.COLUMN_MAX_TEMP)));
+        assertEquals(TestUtilities.TEST_LOCATION,
+                cursor.getString(cursor.getColumnIndex(LocationEntry.COLUMN_LOCATION_SETTING)));
+        cursor.close();
+        assertEquals(after.getLong(WeatherProvider.KEY_MISSES) + 1,
+                getSnapshotCacheStats().getLong(WeatherProvider.KEY_MISSES));
+    }
+
+    private Bundle getSnapshotCacheStats() {
+        return mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherProvider.METHOD_SNAPSHOT_CACHE_STATS, null, null);
+    }
 }
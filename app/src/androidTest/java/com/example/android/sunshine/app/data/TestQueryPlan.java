@@ -0,0 +1,105 @@
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Checks the query plans of the provider's weather queries, so a schema change can't quietly
+ * send them back to scanning the weather table.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class TestQueryPlan extends AndroidTestCase {
+
+    // what the forecast list asks for
+    private static final String[] FORECAST_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final String FORECAST_SORT_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private SQLiteDatabase mDb;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mContext.deleteDatabase(WeatherDbHelper.DATABASE_NAME);
+        mDb = new WeatherDbHelper(mContext).getReadableDatabase();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mDb.close();
+        super.tearDown();
+    }
+
+    public void testWeatherWithLocationUsesCoveringIndex() {
+        String plan = explain(WeatherProvider.buildWeatherByLocationSettingQuery(FORECAST_COLUMNS,
+                WeatherProvider.sLocationSettingSelection, FORECAST_SORT_ORDER), "94043");
+        assertCoveredByLocationDateIndex(plan);
+    }
+
+    public void testWeatherWithLocationAndStartDateUsesCoveringIndex() {
+        String plan = explain(WeatherProvider.buildWeatherByLocationSettingQuery(FORECAST_COLUMNS,
+                WeatherProvider.sLocationSettingWithStartDateSelection, FORECAST_SORT_ORDER),
+                "94043", Long.toString(TestUtilities.TEST_DATE));
+        assertCoveredByLocationDateIndex(plan);
+    }
+
+    public void testWeatherWithLocationAndDateSearchesByKey() {
+        String plan = explain(WeatherProvider.buildWeatherByLocationSettingQuery(null,
+                WeatherProvider.sLocationSettingAndDaySelection, null),
+                "94043", Long.toString(TestUtilities.TEST_DATE));
+        assertNoWeatherScan(plan);
+        // either the unique date/location index or the location/date one will do
+        assertTrue("Error: The single day lookup doesn't search the weather table through an index: "
+                + plan, plan.matches("(?s).*SEARCH (TABLE )?" + WeatherEntry.TABLE_NAME
+                + " USING (COVERING )?INDEX .*"));
+    }
+
+    public void testWeatherByDateSearchesIndex() {
+        // the plain weather uri is queried and cleaned up by date
+        String plan = explain("SELECT " + WeatherEntry.COLUMN_LOC_KEY + " FROM " + WeatherEntry.TABLE_NAME
+                + " WHERE " + WeatherEntry.COLUMN_DATE + " >= ?", Long.toString(TestUtilities.TEST_DATE));
+        assertNoWeatherScan(plan);
+    }
+
+    private static void assertCoveredByLocationDateIndex(String plan) {
+        assertNoWeatherScan(plan);
+        assertTrue("Error: The forecast isn't read from the covering location/date index: " + plan,
+                plan.contains("COVERING INDEX " + WeatherDbHelper.INDEX_WEATHER_LOCATION_DATE));
+        assertFalse("Error: The forecast is sorted outside of the index: " + plan,
+                plan.contains("TEMP B-TREE"));
+    }
+
+    private static void assertNoWeatherScan(String plan) {
+        assertFalse("Error: The query scans the weather table: " + plan,
+                plan.matches("(?s).*SCAN (TABLE )?" + WeatherEntry.TABLE_NAME + "\\b.*"));
+    }
+
+    private String explain(String sql, String... args) {
+        Cursor cursor = mDb.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+        StringBuilder plan = new StringBuilder();
+        try {
+            int detailIndex = cursor.getColumnIndex("detail");
+            while (cursor.moveToNext()) {
+                plan.append(cursor.getString(detailIndex)).append('\n');
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan.toString();
+    }
+}
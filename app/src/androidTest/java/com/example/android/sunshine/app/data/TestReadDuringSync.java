@@ -0,0 +1,136 @@
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads the forecast of one location over and over while another thread holds a long sync
+ * transaction, and checks the readers don't end up waiting for the writer.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+public class TestReadDuringSync extends AndroidTestCase {
+
+    private static final String LOG_TAG = TestReadDuringSync.class.getSimpleName();
+
+    private static final int DAYS_PER_LOCATION = 100;
+    private static final int SYNC_LOCATIONS = 300;
+    private static final long MILLIS_IN_A_DAY = 1000 * 60 * 60 * 24;
+    private static final String READ_LOCATION_SETTING = "stress0";
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        deleteAllRecords();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        deleteAllRecords();
+        super.tearDown();
+    }
+
+    public void testReaderLatencyDuringSyncTransaction() throws Exception {
+        final long[] locationIds = insertLocations(SYNC_LOCATIONS);
+        // something for the reader to find before the sync commits
+        WeatherRows initialRows = new WeatherRows(DAYS_PER_LOCATION);
+        addForecast(initialRows, locationIds[0], 0);
+        insertRows(initialRows);
+
+        final CountDownLatch writerStarted = new CountDownLatch(1);
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final long[] writeMillis = new long[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                WeatherRows rows = new WeatherRows(SYNC_LOCATIONS * DAYS_PER_LOCATION);
+                for (long locationId : locationIds) {
+                    addForecast(rows, locationId, 1);
+                }
+                long start = SystemClock.elapsedRealtime();
+                writerStarted.countDown();
+                try {
+                    insertRows(rows);
+                } finally {
+                    writeMillis[0] = SystemClock.elapsedRealtime() - start;
+                    writing.set(false);
+                }
+            }
+        });
+        writer.start();
+        writerStarted.await();
+
+        long[] latencies = new long[1024];
+        int reads = 0;
+        while (writing.get()) {
+            long start = SystemClock.elapsedRealtime();
+            Cursor cursor = mContext.getContentResolver().query(
+                    WeatherEntry.buildWeatherLocation(READ_LOCATION_SETTING), null, null, null, null);
+            assertNotNull(cursor);
+            assertTrue("Error: The reader saw no forecast while the sync was running", cursor.getCount() > 0);
+            cursor.close();
+            if (reads == latencies.length) {
+                latencies = Arrays.copyOf(latencies, reads * 2);
+            }
+            latencies[reads++] = SystemClock.elapsedRealtime() - start;
+        }
+        writer.join();
+
+        assertTrue("Error: No reads completed during the sync", reads > 0);
+        Arrays.sort(latencies, 0, reads);
+        long p50 = percentile(latencies, reads, 50);
+        long p95 = percentile(latencies, reads, 95);
+        long p99 = percentile(latencies, reads, 99);
+        Log.d(LOG_TAG, reads + " reads during a " + writeMillis[0] + "ms sync transaction: p50 "
+                + p50 + "ms, p95 " + p95 + "ms, p99 " + p99 + "ms, max " + latencies[reads - 1] + "ms");
+
+        // A reader stuck behind the transaction waits about as long as the transaction itself
+        assertTrue("Error: Readers waited for the sync transaction, p99 " + p99 + "ms of "
+                + writeMillis[0] + "ms", p99 < writeMillis[0] / 2);
+    }
+
+    private static long percentile(long[] sorted, int count, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    private static void addForecast(WeatherRows rows, long locationId, int variant) {
+        for (int day = 0; day < DAYS_PER_LOCATION; day++) {
+            rows.add(locationId, TestUtilities.TEST_DATE + day * MILLIS_IN_A_DAY, "Asteroids", 321,
+                    65.0 - variant, 75.0 + variant, 1.2, 1.3, 5.5, 1.1);
+        }
+    }
+
+    private void insertRows(WeatherRows rows) {
+        mContext.getContentResolver().call(WeatherEntry.CONTENT_URI,
+                WeatherProvider.METHOD_BULK_INSERT_ROWS, null, rows.toBundle());
+    }
+
+    private long[] insertLocations(int count) {
+        long[] locationIds = new long[count];
+        for (int i = 0; i < count; i++) {
+            ContentValues values = TestUtilities.createNorthPoleLocationValues();
+            values.put(LocationEntry.COLUMN_LOCATION_SETTING, "stress" + i);
+            locationIds[i] = ContentUris.parseId(mContext.getContentResolver()
+                    .insert(LocationEntry.CONTENT_URI, values));
+        }
+        return locationIds;
+    }
+
+    private void deleteAllRecords() {
+        mContext.getContentResolver().delete(WeatherEntry.CONTENT_URI, null, null);
+        mContext.getContentResolver().delete(LocationEntry.CONTENT_URI, null, null);
+    }
+}
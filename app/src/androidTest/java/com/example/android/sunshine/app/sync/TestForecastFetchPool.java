@@ -0,0 +1,164 @@
+package com.example.android.sunshine.app.sync;
+
+import android.test.AndroidTestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    Runs the fetch pool against a tiny local HTTP server that answers every request with a
+    recorded forecast after a short delay, and keeps track of how many requests were in flight.
+ */
+public class TestForecastFetchPool extends AndroidTestCase {
+
+    private static final int LOCATIONS = 12;
+    private static final long RESPONSE_DELAY_MS = 150;
+
+    private MockForecastServer mServer;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mServer = new MockForecastServer(TestForecastJsonParser.buildRecordedPayload(14));
+        mServer.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        mServer.shutdown();
+        super.tearDown();
+    }
+
+    public void testPerHostLimitIsRespected() throws Throwable {
+        List<Future<ForecastFetchPool.Result>> futures = fetchAll(4, 2);
+
+        for (Future<ForecastFetchPool.Result> future : futures) {
+            ForecastFetchPool.Result result = future.get();
+            assertNull("Error: fetch failed for " + result.locationSetting, result.error);
+            assertEquals(14, result.forecast.dayCount);
+        }
+        assertEquals(LOCATIONS, mServer.mRequests.get());
+        assertEquals("Error: more requests in flight than the per host limit allows",
+                2, mServer.mMaxConcurrent.get());
+    }
+
+    public void testPoolSizeBoundsConcurrency() throws Throwable {
+        List<Future<ForecastFetchPool.Result>> futures = fetchAll(3, 8);
+        for (Future<ForecastFetchPool.Result> future : futures) {
+            future.get();
+        }
+        assertEquals("Error: more requests in flight than there are workers",
+                3, mServer.mMaxConcurrent.get());
+    }
+
+    public void testParallelFetchIsFasterThanSerial() throws Throwable {
+        long start = System.currentTimeMillis();
+        for (Future<ForecastFetchPool.Result> future : fetchAll(1, 1)) {
+            future.get();
+        }
+        long serial = System.currentTimeMillis() - start;
+
+        start = System.currentTimeMillis();
+        for (Future<ForecastFetchPool.Result> future : fetchAll(4, 4)) {
+            future.get();
+        }
+        long parallel = System.currentTimeMillis() - start;
+
+        assertTrue("Error: 4 workers took " + parallel + "ms, a single one " + serial + "ms",
+                parallel * 2 < serial);
+    }
+
+    private List<Future<ForecastFetchPool.Result>> fetchAll(int poolSize, int perHost) {
+        List<String> locations = new ArrayList<>();
+        for (int i = 0; i < LOCATIONS; i++) {
+            locations.add("9404" + i);
+        }
+        ForecastFetcher fetcher = new ForecastFetcher(
+                "http://127.0.0.1:" + mServer.getPort() + "/forecast/daily?", null);
+        ForecastFetchPool pool = new ForecastFetchPool(fetcher, poolSize, perHost);
+        List<Future<ForecastFetchPool.Result>> futures = pool.fetchAll(locations);
+        pool.shutdown();
+        return futures;
+    }
+
+    static class MockForecastServer extends Thread {
+        final AtomicInteger mConcurrent = new AtomicInteger();
+        final AtomicInteger mMaxConcurrent = new AtomicInteger();
+        final AtomicInteger mRequests = new AtomicInteger();
+        private final ServerSocket mSocket;
+        private final byte[] mBody;
+
+        MockForecastServer(String body) throws IOException {
+            mSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+            mBody = body.getBytes("UTF-8");
+        }
+
+        int getPort() {
+            return mSocket.getLocalPort();
+        }
+
+        @Override
+        public void run() {
+            while (!mSocket.isClosed()) {
+                try {
+                    final Socket client = mSocket.accept();
+                    new Thread() {
+                        @Override
+                        public void run() {
+                            serve(client);
+                        }
+                    }.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            int concurrent = mConcurrent.incrementAndGet();
+            mRequests.incrementAndGet();
+            int max;
+            while (concurrent > (max = mMaxConcurrent.get())
+                    && !mMaxConcurrent.compareAndSet(max, concurrent)) {
+                // retry
+            }
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+                String line;
+                while ((line = in.readLine()) != null && line.length() > 0) {
+                    // skip the request headers
+                }
+                Thread.sleep(RESPONSE_DELAY_MS);
+            } catch (IOException | InterruptedException e) {
+                return;
+            } finally {
+                mConcurrent.decrementAndGet();
+            }
+
+            try {
+                OutputStream out = client.getOutputStream();
+                out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n" +
+                        "Content-Length: " + mBody.length + "\r\nConnection: close\r\n\r\n")
+                        .getBytes("UTF-8"));
+                out.write(mBody);
+                out.flush();
+                client.close();
+            } catch (IOException e) {
+                // the test will notice the failed fetch
+            }
+        }
+
+        void shutdown() throws IOException {
+            mSocket.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.android.sunshine.app.sync;
+
+import android.os.Debug;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+
+/*
+    Checks that the streaming parser reads exactly what the JSONObject parser reads, and compares
+    the two on a recorded 14 day payload. The comparison is logged rather than asserted since
+    timings depend on the device.
+ */
+public class TestForecastJsonParser extends AndroidTestCase {
+
+    public static final String LOG_TAG = TestForecastJsonParser.class.getSimpleName();
+
+    private static final int BENCHMARK_ITERATIONS = 200;
+
+    // Trimmed recording of a forecast/daily response for 94043, cnt=14
+    static final String RECORDED_DAY =
+            "{\"dt\":1461783600,\"temp\":{\"day\":18.43,\"min\":9.76,\"max\":21.52,\"night\":9.76," +
+            "\"eve\":17.56,\"morn\":12.07},\"pressure\":1008.39,\"humidity\":67," +
+            "\"weather\":[{\"id\":501,\"main\":\"Rain\",\"description\":\"moderate rain\"," +
+            "\"icon\":\"10d\"}],\"speed\":4.82,\"deg\":263,\"clouds\":64,\"rain\":3.12}";
+
+    static String buildRecordedPayload(int days) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"city\":{\"id\":5375480,\"name\":\"Mountain View\",")
+                .append("\"coord\":{\"lon\":-122.083847,\"lat\":37.386051},")
+                .append("\"country\":\"US\",\"population\":0},")
+                .append("\"cod\":\"200\",\"message\":0.0123,\"cnt\":").append(days)
+                .append(",\"list\":[");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(RECORDED_DAY);
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    public void testStreamingMatchesTree() throws Throwable {
+        String payload = buildRecordedPayload(14);
+
+        ForecastResponse streamed = ForecastJsonParser.parse(new StringReader(payload));
+        ForecastResponse tree = ForecastJsonParser.parseTree(payload);
+
+        assertEquals(HttpURLConnection.HTTP_OK, streamed.messageCode);
+        assertEquals(tree.messageCode, streamed.messageCode);
+        assertEquals("Mountain View", streamed.cityName);
+        assertEquals(tree.cityLatitude, streamed.cityLatitude);
+        assertEquals(tree.cityLongitude, streamed.cityLongitude);
+        assertEquals(14, streamed.dayCount);
+        assertEquals(tree.dayCount, streamed.dayCount);
+
+        for (int i = 0; i < streamed.dayCount; i++) {
+            assertEquals(tree.pressure[i], streamed.pressure[i]);
+            assertEquals(tree.humidity[i], streamed.humidity[i]);
+            assertEquals(tree.windSpeed[i], streamed.windSpeed[i]);
+            assertEquals(tree.windDirection[i], streamed.windDirection[i]);
+            assertEquals(tree.high[i], streamed.high[i]);
+            assertEquals(tree.low[i], streamed.low[i]);
+            assertEquals(tree.description[i], streamed.description[i]);
+            assertEquals(tree.weatherId[i], streamed.weatherId[i]);
+        }
+    }
+
+    public void testErrorResponse() throws Throwable {
+        String payload = "{\"cod\":\"404\",\"message\":\"Error: Not found city\"}";
+
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND,
+                ForecastJsonParser.parse(new StringReader(payload)).messageCode);
+        assertEquals(HttpURLConnection.HTTP_NOT_FOUND,
+                ForecastJsonParser.parseTree(payload).messageCode);
+    }
+
+    public void testMissingListIsInvalid() throws Throwable {
+        String payload = "{\"city\":{\"name\":\"Mountain View\",\"coord\":{\"lon\":1,\"lat\":2}}}";
+        try {
+            ForecastJsonParser.parse(new StringReader(payload));
+            fail("Error: a response without a list should not parse");
+        } catch (org.json.JSONException expected) {
+        }
+    }
+
+    public void testMissingDayFieldIsInvalid() throws Throwable {
+        // every field the tree parser requires, taken out of the recorded day one at a time
+        String[] fields = {"\"pressure\":1008.39,", "\"humidity\":67,", ",\"speed\":4.82",
+                ",\"deg\":263", "\"min\":9.76,", "\"max\":21.52,", "\"id\":501,",
+                "\"main\":\"Rain\","};
+        for (String field : fields) {
+            assertTrue(field, RECORDED_DAY.contains(field));
+            String payload = buildRecordedPayload(2).replaceFirst(
+                    java.util.regex.Pattern.quote(field), "");
+            try {
+                ForecastJsonParser.parseTree(payload);
+                fail("Error: the tree parser took a day without " + field);
+            } catch (org.json.JSONException expected) {
+            }
+            try {
+                ForecastJsonParser.parse(new StringReader(payload));
+                fail("Error: the streaming parser took a day without " + field);
+            } catch (org.json.JSONException expected) {
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    public void testBenchmarkAgainstTree() throws Throwable {
+        String payload = buildRecordedPayload(14);
+
+        // warm up both paths so the first iteration doesn't pay for class loading
+        for (int i = 0; i < 10; i++) {
+            ForecastJsonParser.parse(new StringReader(payload));
+            ForecastJsonParser.parseTree(payload);
+        }
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        long start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            ForecastJsonParser.parseTree(payload);
+        }
+        long treeNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int treeObjects = Debug.getThreadAllocCount();
+        int treeBytes = Debug.getThreadAllocSize();
+
+        Debug.resetThreadAllocCount();
+        Debug.startAllocCounting();
+        start = System.nanoTime();
+        for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+            ForecastJsonParser.parse(new StringReader(payload));
+        }
+        long streamNanos = System.nanoTime() - start;
+        Debug.stopAllocCounting();
+        int streamObjects = Debug.getThreadAllocCount();
+        int streamBytes = Debug.getThreadAllocSize();
+
+        Log.i(LOG_TAG, String.format("JSONObject: %d us/parse, %d objects/parse, %d bytes/parse",
+                treeNanos / 1000 / BENCHMARK_ITERATIONS, treeObjects / BENCHMARK_ITERATIONS,
+                treeBytes / BENCHMARK_ITERATIONS));
+        Log.i(LOG_TAG, String.format("JsonReader: %d us/parse, %d objects/parse, %d bytes/parse",
+                streamNanos / 1000 / BENCHMARK_ITERATIONS, streamObjects / BENCHMARK_ITERATIONS,
+                streamBytes / BENCHMARK_ITERATIONS));
+
+        // The tree path holds the whole String as well as one object per node, the streaming
+        // path should never allocate more objects than that.
+        assertTrue("Error: streaming parse allocated more objects than the JSONObject parse",
+                streamObjects <= treeObjects);
+    }
+}
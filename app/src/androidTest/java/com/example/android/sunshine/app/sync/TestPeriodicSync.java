@@ -0,0 +1,69 @@
+package com.example.android.sunshine.app.sync;
+
+import android.accounts.Account;
+import android.content.ContentResolver;
+import android.content.PeriodicSync;
+import android.os.Bundle;
+import android.test.AndroidTestCase;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.utils.PollingCheck;
+
+import java.util.List;
+
+/*
+    Checks that configuring the periodic sync replaces whatever periodic sync was registered
+    before, so an adaptive interval isn't undone by a leftover registration still firing.
+ */
+public class TestPeriodicSync extends AndroidTestCase {
+
+    private static final int FIRST_INTERVAL = 60 * 240;
+    private static final int SECOND_INTERVAL = 60 * 480;
+
+    private Account mAccount;
+    private String mAuthority;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mAccount = SunshineSyncAdapter.getSyncAccount(mContext);
+        mAuthority = mContext.getString(R.string.content_authority);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        SunshineSyncAdapter.configurePeriodicSync(mContext,
+                SunshineSyncAdapter.SYNC_INTERVAL, SunshineSyncAdapter.SYNC_FLEXTIME);
+        super.tearDown();
+    }
+
+    public void testOnlyOnePeriodicSyncRemains() {
+        // what older versions left registered: the original sync with empty extras and one
+        // with the all locations extra
+        ContentResolver.addPeriodicSync(mAccount, mAuthority, new Bundle(),
+                SunshineSyncAdapter.SYNC_INTERVAL);
+        Bundle allLocations = new Bundle();
+        allLocations.putBoolean(SunshineSyncAdapter.SYNC_EXTRAS_ALL_LOCATIONS, true);
+        ContentResolver.addPeriodicSync(mAccount, mAuthority, allLocations,
+                SunshineSyncAdapter.SYNC_INTERVAL);
+
+        SunshineSyncAdapter.configurePeriodicSync(mContext, FIRST_INTERVAL, FIRST_INTERVAL / 3);
+        assertSinglePeriodicSync(FIRST_INTERVAL);
+
+        // the next adaptive interval replaces the previous one
+        SunshineSyncAdapter.configurePeriodicSync(mContext, SECOND_INTERVAL, SECOND_INTERVAL / 3);
+        assertSinglePeriodicSync(SECOND_INTERVAL);
+    }
+
+    private void assertSinglePeriodicSync(final int interval) {
+        // the sync manager applies the changes on its own thread
+        new PollingCheck() {
+            @Override
+            protected boolean check() {
+                List<PeriodicSync> syncs = ContentResolver.getPeriodicSyncs(mAccount, mAuthority);
+                return syncs.size() == 1 && syncs.get(0).period == interval
+                        && syncs.get(0).extras.isEmpty();
+            }
+        }.run();
+    }
+}
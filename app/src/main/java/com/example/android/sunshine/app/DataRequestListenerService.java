@@ -1,32 +1,45 @@
 package com.example.android.sunshine.app;
 
+import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.AsyncTask;
+import android.os.SystemClock;
+import android.text.format.Time;
 import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
+import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
+import com.example.android.sunshine.app.sync.SyncCoordinator;
+import com.example.android.sunshine.shared.DataRequest;
+import com.example.android.sunshine.shared.PackedForecast;
 import com.google.android.gms.wearable.MessageEvent;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
-import java.util.concurrent.TimeUnit;
-
+import java.util.TimeZone;
+
+/**
+ * Answers the watch asking for the forecast.
+ * <p/>
+ * A request says which version of the data the watch has and how old a forecast may be. The
+ * phone answers only if it has a newer version, and doesn't answer at all while a forecast is
+ * already on its way to the watch or when the same request comes in again. If the forecast
+ * wasn't downloaded or confirmed by the server recently enough, the phone syncs first and answers
+ * once the sync is done, even if the server had nothing new. Requests without a payload, from older watches, are always answered.
+ */
 public class DataRequestListenerService extends WearableListenerService
 {
     private static final String TAG = DataRequestListenerService.class.getSimpleName();
 
     private static final String MESSAGE_CONFIG = "/path/message";
-    private static final String WEATHER_TYPE_KEY = "weather_type_key";
-    private static final String MAX_TEMP_KEY = "max_temperature_key";
-    private static final String MIN_TEMP_KEY = "min_temperature_key";
-    private static final String WIND_ANGLE_KEY = "wind_angle_key";
-    private static final String WIND_SPEED_KEY = "wind_speed_key";
-    private static final String IS_METRIC_KEY = "is_metric_key";
-    private static final String SUNSHINE_CONFIG = "/sunshine_wear_config";
+    // How long a request id is remembered to drop its repeats
+    private static final long REQUEST_ID_TTL_MILLIS = 60 * 1000;
+
+    // The service is created for every message, what's been seen is kept for the process
+    private static int lastRequestId;
+    private static long lastRequestAt;
+    private static int answeredCount;
+    private static int ignoredCount;
 
     @Override
     public void onMessageReceived(MessageEvent messageEvent)
@@ -34,43 +47,111 @@ public class DataRequestListenerService extends WearableListenerService
         super.onMessageReceived(messageEvent);
         if (messageEvent.getPath().equals(MESSAGE_CONFIG))
         {
-
-            GoogleApiClient googleApiClient = new GoogleApiClient.Builder(this)
-                    .addApi(Wearable.API)
-                    .build();
-
-            ConnectionResult result = googleApiClient.blockingConnect(30, TimeUnit.SECONDS);
-            if (!result.isSuccess())
+            DataRequest request = DataRequest.decode(messageEvent.getData());
+            if (request != null && !shouldAnswer(request))
             {
-                Log.d(TAG, "Blocking connection failed");
+                ignoredCount++;
+                Log.d(TAG, "Not answering " + request + " now, " + answeredCount + " answered and "
+                        + ignoredCount + " ignored so far");
                 return;
             }
+            answeredCount++;
 
-            ForecastDataSet dataItem = extractData();
-            PutDataMapRequest putDataMapReq = PutDataMapRequest.create(SUNSHINE_CONFIG);
+            if (!answer(this))
+            {
+                // Nothing stored to answer with yet, the sync pushes today's forecast to the
+                // wearable once it has one. Repeated requests from the watch share that sync.
+                SunshineSyncAdapter.syncImmediately(this);
+            }
+        }
+    }
 
-            putDataMapReq.getDataMap().putInt(MAX_TEMP_KEY, dataItem.maxTemp);
-            putDataMapReq.getDataMap().putInt(MIN_TEMP_KEY, dataItem.minTemp);
-            putDataMapReq.getDataMap().putInt(WEATHER_TYPE_KEY, dataItem.weatherType);
-            putDataMapReq.getDataMap().putInt(WIND_ANGLE_KEY, dataItem.windAngle);
-            putDataMapReq.getDataMap().putInt(WIND_SPEED_KEY, dataItem.windSpeed);
-            putDataMapReq.getDataMap().putBoolean(IS_METRIC_KEY, Utility.isMetric(this));
+    private boolean shouldAnswer(final DataRequest request)
+    {
+        long now = SystemClock.elapsedRealtime();
+        synchronized (DataRequestListenerService.class)
+        {
+            if (request.requestId == lastRequestId && now - lastRequestAt < REQUEST_ID_TTL_MILLIS)
+                return false;
+            lastRequestId = request.requestId;
+            lastRequestAt = now;
+        }
 
+        WearablePublishQueue queue = WearablePublishQueue.getInstance(this);
+        // the watch gets the forecast waiting to be sent anyway
+        if (queue.isPublishPending())
+            return false;
 
-            final PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
-            boolean success = Wearable.DataApi.putDataItem(googleApiClient, putDataReq).await().getStatus().isSuccess();
-            Log.d(TAG, "Data item success => " + success);
+        long fetchedMillis = queue.getForecastFetchedMillis();
+        if (fetchedMillis == 0 || System.currentTimeMillis() - fetchedMillis > request.maxAgeMillis)
+        {
+            // not worth sending yet, the answer waits for the sync. A sync that got a 304 has
+            // nothing to publish by itself, so the answer can't be left to it.
+            final Context context = getApplicationContext();
+            SyncCoordinator.getInstance(context).requestSync(Utility.getPreferredLocation(context), false,
+                    new SyncCoordinator.SyncListener()
+                    {
+                        @Override
+                        public void onSyncFinished(boolean refreshed)
+                        {
+                            answerAfterSync(context, request, refreshed);
+                        }
+                    });
+            return false;
         }
+
+        return isNewerThanWatch(queue, request);
+    }
+
+    private static boolean isNewerThanWatch(WearablePublishQueue queue, DataRequest request)
+    {
+        long deliveredVersion = queue.getDeliveredVersion();
+        return deliveredVersion == 0 || deliveredVersion > request.dataVersion;
     }
 
-    private ForecastDataSet extractData()
+    /**
+     * Runs on the main thread once the sync a request waited for is done.
+     */
+    private static void answerAfterSync(final Context context, DataRequest request, boolean refreshed)
+    {
+        WearablePublishQueue queue = WearablePublishQueue.getInstance(context);
+        // a sync that stored something new is publishing it already
+        if (queue.isPublishPending() || !isNewerThanWatch(queue, request))
+            return;
+        Log.d(TAG, "Answering " + request + " after the sync, " + (refreshed ? "refreshed" : "failed"));
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                answer(context);
+            }
+        });
+    }
+
+    /**
+     * Publishes the stored forecast of the preferred location.
+     *
+     * @return false if there is nothing stored to publish
+     */
+    private static boolean answer(Context context)
+    {
+        ForecastDataSet dataItem = extractData(context);
+        if (dataItem == null)
+            return false;
+        WearablePublishQueue.getInstance(context).publish(dataItem);
+        return true;
+    }
+
+    private static ForecastDataSet extractData(Context context)
     {
         String sortOrder = WeatherContract.WeatherEntry.COLUMN_DATE + " ASC";
 
-        String locationSetting = Utility.getPreferredLocation(this);
+        String locationSetting = Utility.getPreferredLocation(context);
         Uri weatherForLocationUri = WeatherContract.WeatherEntry.buildWeatherLocationWithStartDate(
                 locationSetting, System.currentTimeMillis());
         String[] projection = {
+                WeatherContract.WeatherEntry.COLUMN_DATE,
                 WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
                 WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
                 WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
@@ -78,20 +159,35 @@ public class DataRequestListenerService extends WearableListenerService
                 WeatherContract.WeatherEntry.COLUMN_DEGREES
         };
 
-        Cursor cursor = getContentResolver().query(weatherForLocationUri, projection, null, null, sortOrder);
-        if(cursor != null && cursor.moveToFirst())
+        Cursor cursor = context.getContentResolver().query(weatherForLocationUri, projection, null, null, sortOrder);
+        if (cursor == null)
+            return null;
+
+        PackedForecast days = new PackedForecast(cursor.getCount());
+        try
         {
-            int weatherId = cursor.getInt(0);
-            int maxTemp = cursor.getInt(1);
-            int minTemp = cursor.getInt(2);
-            int windSpeed = cursor.getInt(3);
-            int windAngle = cursor.getInt(4);
-            return new ForecastDataSet(weatherId, maxTemp, minTemp, windAngle, windSpeed);
+            while (cursor.moveToNext())
+            {
+                int julianDay = getJulianDay(cursor.getLong(0));
+                if (days.size() == 0)
+                    days.setStartDay(julianDay);
+                else if (julianDay != days.getStartDay() + days.size())
+                    break; // days are looked up by position, a gap ends the window
+                days.add(cursor.getInt(1), (int) Math.round(cursor.getDouble(2)),
+                        (int) Math.round(cursor.getDouble(3)), (int) Math.round(cursor.getDouble(5)),
+                        (int) Math.round(cursor.getDouble(4)));
+            }
         }
-        if(cursor != null)
+        finally
+        {
             cursor.close();
+        }
 
-        return null;
+        return days.size() > 0 ? ForecastDataSet.fromForecastDays(days) : null;
+    }
 
+    private static int getJulianDay(long date)
+    {
+        return Time.getJulianDay(date, TimeZone.getDefault().getOffset(date) / 1000);
     }
 }
@@ -1,5 +1,7 @@
 package com.example.android.sunshine.app;
 
+import com.example.android.sunshine.shared.PackedForecast;
+
 /**
  * Created by Arin on 24/04/16.
  */
@@ -10,14 +12,33 @@ public class ForecastDataSet
     public final int minTemp;
     public final int windAngle;
     public final int windSpeed;
+    /**
+     * The whole forecast window as encoded by {@link PackedForecast}, today included, may be null
+     */
+    public final byte[] forecastDays;
 
     public ForecastDataSet(int weatherType, int maxTemp, int minTemp, int windAngle, int windSpeed)
+    {
+        this(weatherType, maxTemp, minTemp, windAngle, windSpeed, null);
+    }
+
+    public ForecastDataSet(int weatherType, int maxTemp, int minTemp, int windAngle, int windSpeed,
+                           byte[] forecastDays)
     {
         this.weatherType = weatherType;
         this.maxTemp = maxTemp;
         this.minTemp = minTemp;
         this.windAngle = windAngle;
         this.windSpeed = windSpeed;
+        this.forecastDays = forecastDays;
     }
-}
 
+    /**
+     * The first day of an encoded forecast, along with the forecast itself.
+     */
+    public static ForecastDataSet fromForecastDays(PackedForecast days)
+    {
+        return new ForecastDataSet(days.getWeatherId(0), days.getMaxTemp(0), days.getMinTemp(0),
+                days.getWindAngle(0), days.getWindSpeed(0), days.encode());
+    }
+}
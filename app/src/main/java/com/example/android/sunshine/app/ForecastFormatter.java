@@ -0,0 +1,249 @@
+package com.example.android.sunshine.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.text.format.Time;
+import android.util.SparseArray;
+
+import com.example.android.sunshine.shared.WeatherConditions;
+
+import java.text.SimpleDateFormat;
+import java.util.Formatter;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats temperatures, days and weather conditions the way {@link Utility} does, without going
+ * to the preferences or the resources for every value.
+ * <p/>
+ * The unit and art pack settings, the locale and the format strings are read once and read
+ * again only when those preferences, the locale or the time zone change. The art pack's URLs
+ * are made once for every kind of weather. Temperatures are rounded to whole
+ * degrees anyway, so the text of every degree is kept once made, and so is the text of every day
+ * until the date changes. Whatever still has to be formatted goes through a single reused
+ * builder. All methods may be called from any thread.
+ */
+public class ForecastFormatter implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    // Degrees whose text is kept, in the unit shown; anything outside is formatted every time
+    private static final int MIN_CACHED_DEGREES = -100;
+    private static final int MAX_CACHED_DEGREES = 150;
+
+    private static ForecastFormatter sInstance;
+
+    private final Context mContext;
+    private final SharedPreferences mPrefs;
+    private final String mUnitsKey;
+    private final String mArtPackKey;
+
+    private final StringBuilder mBuilder = new StringBuilder();
+    private Formatter mFormatter;
+
+    // Snapshot of the settings and resources, refreshed by reload()
+    private boolean mIsMetric;
+    private boolean mUsingLocalGraphics;
+    // Indexed by WeatherConditions kind
+    private final String[] mArtUrls = new String[WeatherConditions.KIND_COUNT];
+    private String mTemperatureFormat;
+    private String mFullFriendlyDateFormat;
+    private String mToday;
+    private String mTomorrow;
+    private SimpleDateFormat mDayNameFormat;
+    private SimpleDateFormat mMonthDayFormat;
+    private SimpleDateFormat mShortDateFormat;
+    private TimeZone mTimeZone;
+    private final String[] mDegrees = new String[MAX_CACHED_DEGREES - MIN_CACHED_DEGREES + 1];
+    private final SparseArray<String> mConditions = new SparseArray<>();
+
+    // The day the cached day texts are relative to, and when it ends
+    private int mCurrentJulianDay;
+    private long mNextDayStartMillis;
+    private final SparseArray<String> mDays = new SparseArray<>();
+
+    private final BroadcastReceiver mLocaleOrTimeZoneReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            reload();
+        }
+    };
+
+    public static synchronized ForecastFormatter getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ForecastFormatter(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private ForecastFormatter(Context context) {
+        mContext = context;
+        mPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        mUnitsKey = context.getString(R.string.pref_units_key);
+        mArtPackKey = context.getString(R.string.pref_art_pack_key);
+        reload();
+
+        // the preferences only keep a weak reference to their listeners, this one lives as
+        // long as the process
+        mPrefs.registerOnSharedPreferenceChangeListener(this);
+        IntentFilter filter = new IntentFilter(Intent.ACTION_LOCALE_CHANGED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        context.registerReceiver(mLocaleOrTimeZoneReceiver, filter);
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (mUnitsKey.equals(key) || mArtPackKey.equals(key)) {
+            reload();
+        }
+    }
+
+    /**
+     * Drops everything cached and reads the settings and resources again.
+     */
+    public synchronized void reload() {
+        mIsMetric = Utility.isMetric(mContext);
+        String sunshineArtPack = mContext.getString(R.string.pref_art_pack_sunshine);
+        String formatArtUrl = mPrefs.getString(mArtPackKey, sunshineArtPack);
+        mUsingLocalGraphics = formatArtUrl.equals(sunshineArtPack);
+        for (int kind = 0; kind < mArtUrls.length; kind++) {
+            mArtUrls[kind] = null;
+        }
+        // one id of every kind is enough to make all of the pack's URLs
+        for (int weatherId = 0; weatherId < WeatherConditions.ID_COUNT; weatherId++) {
+            int kind = WeatherConditions.getKind(weatherId);
+            if (mArtUrls[kind] == null) {
+                mArtUrls[kind] = Utility.formatArtUrl(formatArtUrl, weatherId);
+            }
+        }
+        Locale locale = Locale.getDefault();
+        mFormatter = new Formatter(mBuilder, locale);
+        mTemperatureFormat = mContext.getString(R.string.format_temperature);
+        mFullFriendlyDateFormat = mContext.getString(R.string.format_full_friendly_date);
+        mToday = mContext.getString(R.string.today);
+        mTomorrow = mContext.getString(R.string.tomorrow);
+        mDayNameFormat = new SimpleDateFormat("EEEE", locale);
+        mMonthDayFormat = new SimpleDateFormat("MMMM dd", locale);
+        mShortDateFormat = new SimpleDateFormat("EEE MMM dd", locale);
+        mTimeZone = TimeZone.getDefault();
+
+        for (int i = 0; i < mDegrees.length; i++) {
+            mDegrees[i] = null;
+        }
+        mConditions.clear();
+        mDays.clear();
+        mNextDayStartMillis = 0;
+    }
+
+    public synchronized boolean isMetric() {
+        return mIsMetric;
+    }
+
+    /**
+     * Same as {@link Utility#usingLocalGraphics(Context)}.
+     */
+    public synchronized boolean usingLocalGraphics() {
+        return mUsingLocalGraphics;
+    }
+
+    /**
+     * Same as {@link Utility#getArtUrlForWeatherCondition(Context, int)}.
+     */
+    public synchronized String getArtUrlForWeatherCondition(int weatherId) {
+        return mArtUrls[WeatherConditions.getKind(weatherId)];
+    }
+
+    /**
+     * Same as {@link Utility#formatTemperature(Context, double)}.
+     *
+     * @param temperature in Celsius, as stored
+     */
+    public synchronized String formatTemperature(double temperature) {
+        if (!mIsMetric) {
+            temperature = (temperature * 1.8) + 32;
+        }
+        // the format shows whole degrees, rounding half away from zero like it does
+        long degrees = (long) (Math.signum(temperature) * Math.floor(Math.abs(temperature) + 0.5));
+        if (degrees < MIN_CACHED_DEGREES || degrees > MAX_CACHED_DEGREES) {
+            return format(mTemperatureFormat, (double) degrees);
+        }
+
+        int index = (int) degrees - MIN_CACHED_DEGREES;
+        String text = mDegrees[index];
+        if (text == null) {
+            text = format(mTemperatureFormat, (double) degrees);
+            mDegrees[index] = text;
+        }
+        return text;
+    }
+
+    /**
+     * Same as {@link Utility#getFriendlyDayString(Context, long, boolean)}.
+     */
+    public synchronized String getFriendlyDayString(long dateInMillis, boolean displayLongToday) {
+        long now = System.currentTimeMillis();
+        if (now >= mNextDayStartMillis) {
+            startDay(now);
+        }
+
+        int julianDay = getJulianDay(dateInMillis);
+        // the same day is shown the same way, except for the long form of today
+        int key = julianDay * 2 + (displayLongToday && julianDay == mCurrentJulianDay ? 1 : 0);
+        String text = mDays.get(key);
+        if (text == null) {
+            text = createFriendlyDayString(dateInMillis, julianDay, displayLongToday);
+            mDays.put(key, text);
+        }
+        return text;
+    }
+
+    private String createFriendlyDayString(long dateInMillis, int julianDay, boolean displayLongToday) {
+        if (displayLongToday && julianDay == mCurrentJulianDay) {
+            return format(mFullFriendlyDateFormat, mToday, mMonthDayFormat.format(dateInMillis));
+        } else if (julianDay == mCurrentJulianDay) {
+            return mToday;
+        } else if (julianDay == mCurrentJulianDay + 1) {
+            return mTomorrow;
+        } else if (julianDay < mCurrentJulianDay + 7) {
+            return mDayNameFormat.format(dateInMillis);
+        } else {
+            return mShortDateFormat.format(dateInMillis);
+        }
+    }
+
+    /**
+     * Same as {@link Utility#getStringForWeatherCondition(Context, int)}.
+     */
+    public synchronized String getStringForWeatherCondition(int weatherId) {
+        String text = mConditions.get(weatherId);
+        if (text == null) {
+            text = Utility.getStringForWeatherCondition(mContext, weatherId);
+            mConditions.put(weatherId, text);
+        }
+        return text;
+    }
+
+    /**
+     * Works out today's Julian day and when it ends, and forgets the day texts relative to the
+     * day before.
+     */
+    private void startDay(long now) {
+        mCurrentJulianDay = getJulianDay(now);
+        Time time = new Time();
+        time.setJulianDay(mCurrentJulianDay + 1);
+        mNextDayStartMillis = time.toMillis(true);
+        mDays.clear();
+    }
+
+    private int getJulianDay(long millis) {
+        return Time.getJulianDay(millis, mTimeZone.getOffset(millis) / 1000);
+    }
+
+    private String format(String format, Object... args) {
+        mBuilder.setLength(0);
+        mFormatter.format(format, args);
+        return mBuilder.toString();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+import android.support.v4.content.CursorLoader;
+
+import java.util.List;
+
+/**
+ * Loads the forecast like a {@link CursorLoader} and, still on the loader's background thread,
+ * projects it into the {@link ForecastRow}s the list shows. The cursor it delivers is a
+ * {@link RowsCursor} carrying those rows, so the UI thread gets them ready to bind and can still
+ * read the cursor as before.
+ */
+public class ForecastLoader extends CursorLoader {
+
+    public ForecastLoader(Context context, Uri uri, String[] projection, String selection,
+                          String[] selectionArgs, String sortOrder) {
+        super(context, uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) {
+            return null;
+        }
+        return new RowsCursor(cursor, ForecastRow.project(getContext(), cursor));
+    }
+
+    /**
+     * The loaded cursor along with its rows projected.
+     */
+    public static class RowsCursor extends CursorWrapper {
+        private final List<ForecastRow> mRows;
+
+        RowsCursor(Cursor cursor, List<ForecastRow> rows) {
+            super(cursor);
+            mRows = rows;
+        }
+
+        public List<ForecastRow> getRows() {
+            return mRows;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One row of the forecast list with everything {@link ForecastAdapter} shows already worked
+ * out: the texts formatted, the images picked and the accessibility descriptions made. Rows are
+ * projected from the forecast cursor off the UI thread, so binding one only assigns fields.
+ * Never changes once created.
+ */
+public final class ForecastRow {
+    public final long date;
+    // The date as the first row of the today layout shows it, and as every other row does
+    public final String todayDateText;
+    public final String dateText;
+    public final int artResource;
+    public final int iconResource;
+    // Loaded in place of the local images when an art pack is used
+    public final boolean usingLocalGraphics;
+    public final String artUrl;
+    public final String description;
+    public final String descriptionA11y;
+    public final String highText;
+    public final String highA11y;
+    public final String lowText;
+    public final String lowA11y;
+
+    private ForecastRow(Context context, ForecastFormatter formatter, Cursor cursor) {
+        int weatherId = cursor.getInt(ForecastFragment.COL_WEATHER_CONDITION_ID);
+        date = cursor.getLong(ForecastFragment.COL_WEATHER_DATE);
+        todayDateText = formatter.getFriendlyDayString(date, true);
+        dateText = formatter.getFriendlyDayString(date, false);
+
+        artResource = Utility.getArtResourceForWeatherCondition(weatherId);
+        iconResource = Utility.getIconResourceForWeatherCondition(weatherId);
+        usingLocalGraphics = formatter.usingLocalGraphics();
+        artUrl = usingLocalGraphics ? null : formatter.getArtUrlForWeatherCondition(weatherId);
+
+        description = formatter.getStringForWeatherCondition(weatherId);
+        descriptionA11y = context.getString(R.string.a11y_forecast, description);
+        highText = formatter.formatTemperature(cursor.getDouble(ForecastFragment.COL_WEATHER_MAX_TEMP));
+        highA11y = context.getString(R.string.a11y_high_temp, highText);
+        lowText = formatter.formatTemperature(cursor.getDouble(ForecastFragment.COL_WEATHER_MIN_TEMP));
+        lowA11y = context.getString(R.string.a11y_low_temp, lowText);
+    }
+
+    /**
+     * Turns every row of a cursor with the {@link ForecastFragment} columns into a row model,
+     * leaving the cursor before its first row.
+     */
+    public static List<ForecastRow> project(Context context, Cursor cursor) {
+        if (cursor == null) {
+            return Collections.emptyList();
+        }
+        ForecastFormatter formatter = ForecastFormatter.getInstance(context);
+        List<ForecastRow> rows = new ArrayList<>(cursor.getCount());
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            rows.add(new ForecastRow(context, formatter, cursor));
+        }
+        cursor.moveToPosition(-1);
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * Whether binding this row shows exactly what binding {@code other} does.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ForecastRow)) {
+            return false;
+        }
+        ForecastRow other = (ForecastRow) o;
+        return date == other.date
+                && artResource == other.artResource
+                && iconResource == other.iconResource
+                && usingLocalGraphics == other.usingLocalGraphics
+                && equal(artUrl, other.artUrl)
+                && todayDateText.equals(other.todayDateText)
+                && dateText.equals(other.dateText)
+                && description.equals(other.description)
+                && descriptionA11y.equals(other.descriptionA11y)
+                && highText.equals(other.highText)
+                && highA11y.equals(other.highA11y)
+                && lowText.equals(other.lowText)
+                && lowA11y.equals(other.lowA11y);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = (int) (date ^ (date >>> 32));
+        result = 31 * result + artResource;
+        result = 31 * result + description.hashCode();
+        result = 31 * result + highText.hashCode();
+        result = 31 * result + lowText.hashCode();
+        return result;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
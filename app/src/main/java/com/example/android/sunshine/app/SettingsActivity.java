@@ -18,24 +18,15 @@ package com.example.android.sunshine.app;
 import android.annotation.TargetApi;
 import android.content.Intent;
 import android.content.SharedPreferences;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.ListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceActivity;
 import android.preference.PreferenceManager;
-import android.util.Log;
 
 import com.example.android.sunshine.app.data.WeatherContract;
 import com.example.android.sunshine.app.sync.SunshineSyncAdapter;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
-
-import java.util.concurrent.TimeUnit;
 
 /**
  * A {@link PreferenceActivity} that presents a set of application settings.
@@ -48,12 +39,6 @@ import java.util.concurrent.TimeUnit;
 public class SettingsActivity extends PreferenceActivity
         implements Preference.OnPreferenceChangeListener, SharedPreferences.OnSharedPreferenceChangeListener {
 
-    private static final String IS_METRIC_KEY = "is_metric_key";
-    private static final String SUNSHINE_CONFIG = "/sunshine_wear_config";
-    private static final String TAG = SettingsActivity.class.getSimpleName();
-    private GoogleApiClient googleApiClient;
-
-
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -65,11 +50,6 @@ public class SettingsActivity extends PreferenceActivity
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_location_key)));
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_units_key)));
         bindPreferenceSummaryToValue(findPreference(getString(R.string.pref_art_pack_key)));
-
-
-        googleApiClient = new GoogleApiClient.Builder(this)
-                .addApi(Wearable.API)
-                .build();
     }
 
     // Registers a shared preference change listener that gets notified when preferences change
@@ -170,31 +150,8 @@ public class SettingsActivity extends PreferenceActivity
         }
     }
 
-    private void notifyWearableOnUnitChange()
-    {
-        new AsyncTask<Void, Void, Void>()
-        {
-            @Override
-            protected Void doInBackground(Void... params)
-            {
-                ConnectionResult result = googleApiClient.blockingConnect(30, TimeUnit.SECONDS);
-                if (!result.isSuccess())
-                {
-                    Log.d(TAG, "Blocking connection failed");
-                    return null;
-                }
-
-                PutDataMapRequest putDataMapReq = PutDataMapRequest.create(SUNSHINE_CONFIG);
-
-                putDataMapReq.getDataMap().putBoolean(IS_METRIC_KEY, Utility.isMetric(SettingsActivity.this));
-
-
-                final PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
-                boolean success = Wearable.DataApi.putDataItem(googleApiClient, putDataReq).await().getStatus().isSuccess();
-                Log.d(TAG, "Data item success => " + success);
-                return null;
-            }
-        }.execute();
+    private void notifyWearableOnUnitChange() {
+        WearablePublishQueue.getInstance(this).publishUnitsChanged();
     }
 
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
@@ -0,0 +1,251 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.util.Log;
+
+import com.google.android.gms.common.ConnectionResult;
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares one Wearable {@link GoogleApiClient} across everything in the process talking to the
+ * watch, instead of each caller building and connecting its own.
+ * <p/>
+ * Callers {@link #acquire()} the client, use it and {@link #release()} it. The client connects
+ * on the first acquire and stays connected while anyone holds it. Once the last holder released
+ * it, it's disconnected after an idle timeout, so a burst of watch requests reuses a single
+ * connection without keeping Play services bound for good.
+ * <p/>
+ * Anyone who needs to act once the client is connected again, like sending what failed while it
+ * wasn't, registers a {@link ConnectionListener}.
+ */
+public class WearableConnectionManager
+{
+    private static final String TAG = WearableConnectionManager.class.getSimpleName();
+
+    private static final long CONNECT_TIMEOUT_SECONDS = 30;
+
+    private static WearableConnectionManager sInstance;
+
+    private final GoogleApiClient googleApiClient;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final long idleTimeoutMillis;
+    // Only one caller connects, the others wait for it
+    private final Object connectLock = new Object();
+    private final List<ConnectionListener> connectionListeners = new CopyOnWriteArrayList<>();
+
+    private int refCount;
+    private long acquireCount;
+    private long reuseCount;
+    private long connectCount;
+    private long connectFailureCount;
+    private long totalConnectMillis;
+    private long maxConnectMillis;
+    private long idleDisconnectCount;
+
+    private final Runnable disconnectIfIdle = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            disconnectIfIdle();
+        }
+    };
+
+    public static synchronized WearableConnectionManager getInstance(Context context)
+    {
+        if (sInstance == null)
+            sInstance = new WearableConnectionManager(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private WearableConnectionManager(Context context)
+    {
+        idleTimeoutMillis = context.getResources().getInteger(R.integer.wearable_idle_disconnect_seconds) * 1000L;
+        googleApiClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .addConnectionCallbacks(new GoogleApiClient.ConnectionCallbacks()
+                {
+                    @Override
+                    public void onConnected(@Nullable Bundle bundle)
+                    {
+                        Log.d(TAG, "connected GoogleAPI");
+                        for (ConnectionListener listener : connectionListeners)
+                            listener.onConnected();
+                    }
+
+                    @Override
+                    public void onConnectionSuspended(int i)
+                    {
+                        // the client reconnects by itself, holders just see failed calls meanwhile
+                        Log.d(TAG, "connection suspended - GoogleApi");
+                    }
+                })
+                .addOnConnectionFailedListener(new GoogleApiClient.OnConnectionFailedListener()
+                {
+                    @Override
+                    public void onConnectionFailed(@NonNull ConnectionResult connectionResult)
+                    {
+                        Log.d(TAG, "connection failed - GoogleApi: " + connectionResult);
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Has the listener called on the main thread every time the client connects, be it on an
+     * acquire or by itself after the connection was suspended.
+     */
+    public void addConnectionListener(@NonNull ConnectionListener listener)
+    {
+        connectionListeners.add(listener);
+    }
+
+    public void removeConnectionListener(@NonNull ConnectionListener listener)
+    {
+        connectionListeners.remove(listener);
+    }
+
+    /**
+     * Hands out the shared client, connecting it first if needed. Every successful acquire has
+     * to be matched by a {@link #release()}.
+     *
+     * @return the connected client, or null if it couldn't connect, in which case there is
+     * nothing to release
+     */
+    @WorkerThread
+    @Nullable
+    public GoogleApiClient acquire()
+    {
+        synchronized (this)
+        {
+            refCount++;
+            acquireCount++;
+            handler.removeCallbacks(disconnectIfIdle);
+        }
+
+        synchronized (connectLock)
+        {
+            if (googleApiClient.isConnected())
+            {
+                synchronized (this)
+                {
+                    reuseCount++;
+                }
+                return googleApiClient;
+            }
+
+            long start = SystemClock.elapsedRealtime();
+            ConnectionResult result = googleApiClient.blockingConnect(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long connectMillis = SystemClock.elapsedRealtime() - start;
+            synchronized (this)
+            {
+                if (result.isSuccess())
+                {
+                    connectCount++;
+                    totalConnectMillis += connectMillis;
+                    maxConnectMillis = Math.max(maxConnectMillis, connectMillis);
+                }
+                else
+                {
+                    connectFailureCount++;
+                }
+            }
+            Log.d(TAG, "Connecting took " + connectMillis + "ms, " + (result.isSuccess() ? "connected" : result));
+            if (!result.isSuccess())
+            {
+                release();
+                return null;
+            }
+            return googleApiClient;
+        }
+    }
+
+    /**
+     * Gives back a client handed out by {@link #acquire()}.
+     */
+    public synchronized void release()
+    {
+        if (refCount == 0)
+            throw new IllegalStateException("Released more often than acquired");
+        refCount--;
+        if (refCount == 0)
+            handler.postDelayed(disconnectIfIdle, idleTimeoutMillis);
+    }
+
+    private void disconnectIfIdle()
+    {
+        synchronized (this)
+        {
+            if (refCount > 0 || !googleApiClient.isConnected())
+                return;
+            idleDisconnectCount++;
+            googleApiClient.disconnect();
+        }
+        Log.d(TAG, "Disconnected after being idle, " + getStats());
+    }
+
+    public synchronized long getAcquireCount()
+    {
+        return acquireCount;
+    }
+
+    /**
+     * Acquires served by a client that was already connected.
+     */
+    public synchronized long getReuseCount()
+    {
+        return reuseCount;
+    }
+
+    public synchronized long getConnectCount()
+    {
+        return connectCount;
+    }
+
+    public synchronized long getConnectFailureCount()
+    {
+        return connectFailureCount;
+    }
+
+    /**
+     * Average time a successful connect took, in milliseconds.
+     */
+    public synchronized long getAverageConnectMillis()
+    {
+        return connectCount == 0 ? 0 : totalConnectMillis / connectCount;
+    }
+
+    public synchronized long getMaxConnectMillis()
+    {
+        return maxConnectMillis;
+    }
+
+    public synchronized long getIdleDisconnectCount()
+    {
+        return idleDisconnectCount;
+    }
+
+    public synchronized String getStats()
+    {
+        return acquireCount + " acquires, " + reuseCount + " reused, " + connectCount + " connects ("
+                + connectFailureCount + " failed) averaging " + getAverageConnectMillis() + "ms, max "
+                + maxConnectMillis + "ms, " + idleDisconnectCount + " idle disconnects";
+    }
+
+    public interface ConnectionListener
+    {
+        void onConnected();
+    }
+}
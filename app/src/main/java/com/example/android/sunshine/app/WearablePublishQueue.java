@@ -0,0 +1,405 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Base64;
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.Status;
+import com.google.android.gms.wearable.DataMap;
+import com.google.android.gms.wearable.PutDataMapRequest;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Publishes the forecast to the wearable from a single background thread over the connection
+ * shared through {@link WearableConnectionManager}, so callers like the sync adapter only hand the data over and carry on.
+ * <p/>
+ * Only the newest forecast matters to the watch: one published while another is still waiting
+ * replaces it. The forecast is persisted as soon as it's handed over and marked published once
+ * the Data API took it, so a failed publish is retried with a growing backoff, and one cut short
+ * by the process dying is picked up the next time the queue is created. A retry waiting on its
+ * backoff goes right away once the shared client has reconnected. Either way only the latest
+ * state is sent.
+ * <p/>
+ * A fingerprint of the last payload the Data API took is kept as well, and a forecast that
+ * doesn't change it, same weather in the same units, isn't sent at all. Every payload that is
+ * sent carries a version, the time it was sent, so the watch can tell the phone what it has.
+ */
+public class WearablePublishQueue
+{
+    private static final String TAG = WearablePublishQueue.class.getSimpleName();
+
+    private static final String SUNSHINE_CONFIG = "/sunshine_wear_config";
+    private static final String WEATHER_TYPE_KEY = "weather_type_key";
+    private static final String MAX_TEMP_KEY = "max_temperature_key";
+    private static final String MIN_TEMP_KEY = "min_temperature_key";
+    private static final String WIND_ANGLE_KEY = "wind_angle_key";
+    private static final String WIND_SPEED_KEY = "wind_speed_key";
+    private static final String IS_METRIC_KEY = "is_metric_key";
+    private static final String FORECAST_DAYS_KEY = "forecast_days_key";
+    private static final String DATA_VERSION_KEY = "data_version_key";
+
+    private static final String PREFS_NAME = "wearable_publish";
+    private static final String HAS_PAYLOAD_KEY = "has_payload";
+    private static final String PUBLISHED_KEY = "published";
+    private static final String PUBLISHED_COUNT_KEY = "published_count";
+    private static final String COLLAPSED_COUNT_KEY = "collapsed_count";
+    private static final String RETRY_COUNT_KEY = "retry_count";
+    private static final String AVOIDED_COUNT_KEY = "avoided_count";
+    private static final String DELIVERED_FINGERPRINT_KEY = "delivered_fingerprint";
+    private static final String DELIVERED_VERSION_KEY = "delivered_version";
+    private static final String FORECAST_FETCHED_KEY = "forecast_fetched_millis";
+
+    private static final int MSG_PUBLISH = 1;
+    private static final int MSG_RECONNECTED = 2;
+    private static final long PUT_TIMEOUT_SECONDS = 30;
+    private static final long MIN_BACKOFF_MILLIS = 5 * 1000;
+    private static final long MAX_BACKOFF_MILLIS = 10 * 60 * 1000;
+
+    private static WearablePublishQueue sInstance;
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Handler handler;
+    private final WearableConnectionManager connectionManager;
+
+    // Handed over but not taken by the Data API yet, only ever the newest one
+    private ForecastDataSet pending;
+    // Only touched on the publishing thread
+    private long backoffMillis = MIN_BACKOFF_MILLIS;
+
+    public static synchronized WearablePublishQueue getInstance(Context context)
+    {
+        if (sInstance == null)
+            sInstance = new WearablePublishQueue(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private WearablePublishQueue(Context context)
+    {
+        this.context = context;
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        HandlerThread thread = new HandlerThread(TAG, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        handler = new PublishHandler(thread.getLooper());
+
+        connectionManager = WearableConnectionManager.getInstance(context);
+        connectionManager.addConnectionListener(new WearableConnectionManager.ConnectionListener()
+        {
+            @Override
+            public void onConnected()
+            {
+                // whatever failed while we were disconnected can go now, once any publish
+                // still running on the publishing thread is done
+                handler.sendEmptyMessage(MSG_RECONNECTED);
+            }
+        });
+
+        resumeUnpublished();
+    }
+
+    /**
+     * Queues the forecast to be sent to the wearable and returns right away. Replaces any
+     * forecast still waiting to be sent.
+     */
+    public void publish(@NonNull ForecastDataSet dataSet)
+    {
+        synchronized (this)
+        {
+            if (pending != null)
+                increment(COLLAPSED_COUNT_KEY);
+            pending = dataSet;
+            persist(dataSet);
+            schedulePublish();
+        }
+    }
+
+    /**
+     * Sends the last forecast again so the wearable picks up the current units. Before any
+     * forecast has been published only the units are sent.
+     */
+    public void publishUnitsChanged()
+    {
+        synchronized (this)
+        {
+            if (pending == null)
+                pending = restore();
+            prefs.edit().putBoolean(PUBLISHED_KEY, false).apply();
+            schedulePublish();
+        }
+    }
+
+    private void resumeUnpublished()
+    {
+        synchronized (this)
+        {
+            if (prefs.getBoolean(PUBLISHED_KEY, true) || handler.hasMessages(MSG_PUBLISH))
+                return;
+            if (pending == null)
+                pending = restore();
+            handler.sendEmptyMessage(MSG_PUBLISH);
+        }
+    }
+
+    /**
+     * Runs on the publishing thread. Sends what's unpublished now rather than when its backoff
+     * runs out.
+     */
+    private void resumeAfterReconnect()
+    {
+        synchronized (this)
+        {
+            if (prefs.getBoolean(PUBLISHED_KEY, true))
+                return;
+            if (pending == null)
+                pending = restore();
+            handler.removeMessages(MSG_PUBLISH);
+        }
+        publishPending();
+    }
+
+    private void schedulePublish()
+    {
+        // a retry waiting on its backoff goes now with the newer data
+        handler.removeMessages(MSG_PUBLISH);
+        handler.sendEmptyMessage(MSG_PUBLISH);
+    }
+
+    /**
+     * Runs on the publishing thread.
+     */
+    private void publishPending()
+    {
+        ForecastDataSet dataSet;
+        synchronized (this)
+        {
+            if (prefs.getBoolean(PUBLISHED_KEY, true))
+                return;
+            dataSet = pending;
+        }
+
+        boolean isMetric = Utility.isMetric(context);
+        long fingerprint = fingerprint(dataSet, isMetric);
+        if (prefs.contains(DELIVERED_FINGERPRINT_KEY) && prefs.getLong(DELIVERED_FINGERPRINT_KEY, 0) == fingerprint)
+        {
+            // the watch has this exact payload already, sending it again would only wake both radios
+            increment(AVOIDED_COUNT_KEY);
+            Log.d(TAG, "Forecast unchanged, " + getAvoidedCount() + " transfers avoided so far");
+            markPublished(dataSet);
+            return;
+        }
+
+        GoogleApiClient googleApiClient = connectionManager.acquire();
+        if (googleApiClient == null)
+        {
+            retryLater();
+            return;
+        }
+
+        PutDataMapRequest putDataMapReq = PutDataMapRequest.create(SUNSHINE_CONFIG);
+        DataMap dataMap = putDataMapReq.getDataMap();
+        if (dataSet != null)
+        {
+            dataMap.putInt(MAX_TEMP_KEY, dataSet.maxTemp);
+            dataMap.putInt(MIN_TEMP_KEY, dataSet.minTemp);
+            dataMap.putInt(WEATHER_TYPE_KEY, dataSet.weatherType);
+            dataMap.putInt(WIND_ANGLE_KEY, dataSet.windAngle);
+            dataMap.putInt(WIND_SPEED_KEY, dataSet.windSpeed);
+            if (dataSet.forecastDays != null)
+                dataMap.putByteArray(FORECAST_DAYS_KEY, dataSet.forecastDays);
+        }
+        dataMap.putBoolean(IS_METRIC_KEY, isMetric);
+        long version = System.currentTimeMillis();
+        dataMap.putLong(DATA_VERSION_KEY, version);
+
+        Status status;
+        try
+        {
+            status = Wearable.DataApi.putDataItem(googleApiClient, putDataMapReq.asPutDataRequest())
+                    .await(PUT_TIMEOUT_SECONDS, TimeUnit.SECONDS).getStatus();
+        }
+        finally
+        {
+            connectionManager.release();
+        }
+        Log.d(TAG, "Data item success => " + status.isSuccess());
+        if (!status.isSuccess())
+        {
+            retryLater();
+            return;
+        }
+
+        backoffMillis = MIN_BACKOFF_MILLIS;
+        prefs.edit()
+                .putLong(DELIVERED_FINGERPRINT_KEY, fingerprint)
+                .putLong(DELIVERED_VERSION_KEY, version)
+                .apply();
+        markPublished(dataSet);
+        increment(PUBLISHED_COUNT_KEY);
+    }
+
+    private synchronized void markPublished(ForecastDataSet dataSet)
+    {
+        // something newer may have come in while this one was on its way
+        if (pending == dataSet && !handler.hasMessages(MSG_PUBLISH))
+        {
+            pending = null;
+            prefs.edit().putBoolean(PUBLISHED_KEY, true).apply();
+        }
+    }
+
+    /**
+     * Identifies the payload the watch would get for this forecast and unit setting.
+     */
+    private static long fingerprint(@Nullable ForecastDataSet dataSet, boolean isMetric)
+    {
+        long fingerprint = isMetric ? 1 : 2;
+        if (dataSet != null)
+        {
+            fingerprint = 31 * fingerprint + dataSet.weatherType;
+            fingerprint = 31 * fingerprint + dataSet.maxTemp;
+            fingerprint = 31 * fingerprint + dataSet.minTemp;
+            fingerprint = 31 * fingerprint + dataSet.windAngle;
+            fingerprint = 31 * fingerprint + dataSet.windSpeed;
+            if (dataSet.forecastDays != null)
+            {
+                CRC32 crc = new CRC32();
+                crc.update(dataSet.forecastDays);
+                fingerprint = 31 * fingerprint + crc.getValue();
+            }
+        }
+        return fingerprint;
+    }
+
+    private void retryLater()
+    {
+        increment(RETRY_COUNT_KEY);
+        if (!handler.hasMessages(MSG_PUBLISH))
+            handler.sendEmptyMessageDelayed(MSG_PUBLISH, backoffMillis);
+        Log.d(TAG, "Publishing again in " + backoffMillis + "ms");
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+    }
+
+    private void persist(ForecastDataSet dataSet)
+    {
+        prefs.edit()
+                .putInt(WEATHER_TYPE_KEY, dataSet.weatherType)
+                .putInt(MAX_TEMP_KEY, dataSet.maxTemp)
+                .putInt(MIN_TEMP_KEY, dataSet.minTemp)
+                .putInt(WIND_ANGLE_KEY, dataSet.windAngle)
+                .putInt(WIND_SPEED_KEY, dataSet.windSpeed)
+                .putString(FORECAST_DAYS_KEY, dataSet.forecastDays == null
+                        ? null : Base64.encodeToString(dataSet.forecastDays, Base64.NO_WRAP))
+                .putBoolean(HAS_PAYLOAD_KEY, true)
+                .putBoolean(PUBLISHED_KEY, false)
+                .apply();
+    }
+
+    @Nullable
+    private ForecastDataSet restore()
+    {
+        if (!prefs.getBoolean(HAS_PAYLOAD_KEY, false))
+            return null;
+        String forecastDays = prefs.getString(FORECAST_DAYS_KEY, null);
+        return new ForecastDataSet(prefs.getInt(WEATHER_TYPE_KEY, 0), prefs.getInt(MAX_TEMP_KEY, 0),
+                prefs.getInt(MIN_TEMP_KEY, 0), prefs.getInt(WIND_ANGLE_KEY, 0), prefs.getInt(WIND_SPEED_KEY, 0),
+                forecastDays == null ? null : Base64.decode(forecastDays, Base64.NO_WRAP));
+    }
+
+    private void increment(String key)
+    {
+        prefs.edit().putLong(key, prefs.getLong(key, 0) + 1).apply();
+    }
+
+    /**
+     * Whether a forecast or a units change is waiting to be sent.
+     */
+    public synchronized boolean isPublishPending()
+    {
+        return !prefs.getBoolean(PUBLISHED_KEY, true);
+    }
+
+    /**
+     * Version of the payload the Data API took last, 0 if none was sent yet.
+     */
+    public long getDeliveredVersion()
+    {
+        return prefs.getLong(DELIVERED_VERSION_KEY, 0);
+    }
+
+    /**
+     * Notes that the preferred location's forecast has just been downloaded or confirmed by the
+     * server. Answering the watch from what is stored doesn't make it any fresher, so only the
+     * sync calls this.
+     */
+    public void recordForecastFetched()
+    {
+        prefs.edit().putLong(FORECAST_FETCHED_KEY, System.currentTimeMillis()).apply();
+    }
+
+    /**
+     * When the preferred location's forecast was last downloaded or confirmed, in milliseconds
+     * since the epoch, 0 if never.
+     */
+    public long getForecastFetchedMillis()
+    {
+        return prefs.getLong(FORECAST_FETCHED_KEY, 0);
+    }
+
+    /**
+     * Forecasts the Data API took.
+     */
+    public long getPublishedCount()
+    {
+        return prefs.getLong(PUBLISHED_COUNT_KEY, 0);
+    }
+
+    /**
+     * Forecasts replaced by a newer one before they were sent.
+     */
+    public long getCollapsedCount()
+    {
+        return prefs.getLong(COLLAPSED_COUNT_KEY, 0);
+    }
+
+    public long getRetryCount()
+    {
+        return prefs.getLong(RETRY_COUNT_KEY, 0);
+    }
+
+    /**
+     * Publishes skipped because the watch already had the same forecast in the same units.
+     */
+    public long getAvoidedCount()
+    {
+        return prefs.getLong(AVOIDED_COUNT_KEY, 0);
+    }
+
+    private class PublishHandler extends Handler
+    {
+        PublishHandler(Looper looper)
+        {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(Message msg)
+        {
+            if (msg.what == MSG_PUBLISH)
+                publishPending();
+            else if (msg.what == MSG_RECONNECTED)
+                resumeAfterReconnect();
+        }
+    }
+}
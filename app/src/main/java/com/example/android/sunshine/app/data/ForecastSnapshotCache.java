@@ -0,0 +1,324 @@
+package com.example.android.sunshine.app.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the joined weather and location rows of the most recently read locations in memory, so
+ * the forecast list, detail screen, widgets and Muzei don't go to SQLite for data that hasn't
+ * changed since they last asked.
+ * <p/>
+ * A snapshot is immutable, one primitive array per column sorted by date, and is dropped as a
+ * whole when any of its rows change. Every invalidation bumps a generation, and a snapshot read
+ * from the database is only kept if no invalidation happened while it was being read, so a
+ * query racing a sync can't put stale rows back.
+ */
+class ForecastSnapshotCache {
+
+    // the columns a snapshot is read with, in this order
+    static final String[] SNAPSHOT_COLUMNS = {
+            WeatherEntry.TABLE_NAME + "." + WeatherEntry._ID,
+            WeatherEntry.COLUMN_LOC_KEY,
+            WeatherEntry.COLUMN_DATE,
+            WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherEntry.COLUMN_HUMIDITY,
+            WeatherEntry.COLUMN_PRESSURE,
+            WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherEntry.COLUMN_DEGREES,
+            LocationEntry.COLUMN_LOCATION_SETTING,
+            LocationEntry.COLUMN_CITY_NAME,
+            LocationEntry.COLUMN_COORD_LAT,
+            LocationEntry.COLUMN_COORD_LONG
+    };
+    private static final int COL_WEATHER_ID = 0;
+    private static final int COL_LOC_KEY = 1;
+    private static final int COL_DATE = 2;
+    private static final int COL_SHORT_DESC = 3;
+    private static final int COL_WEATHER_CONDITION_ID = 4;
+    private static final int COL_MIN_TEMP = 5;
+    private static final int COL_MAX_TEMP = 6;
+    private static final int COL_HUMIDITY = 7;
+    private static final int COL_PRESSURE = 8;
+    private static final int COL_WIND_SPEED = 9;
+    private static final int COL_DEGREES = 10;
+    private static final int COL_LOCATION_SETTING = 11;
+    private static final int COL_CITY_NAME = 12;
+    private static final int COL_COORD_LAT = 13;
+    private static final int COL_COORD_LONG = 14;
+
+    static final String SORT_ORDER = WeatherEntry.COLUMN_DATE + " ASC";
+
+    private final LinkedHashMap<String, Snapshot> mSnapshots;
+    private long mGeneration;
+    private long mHits;
+    private long mMisses;
+
+    ForecastSnapshotCache(final int maxLocations) {
+        // access ordered, so the least recently read location is the one evicted
+        mSnapshots = new LinkedHashMap<String, Snapshot>(maxLocations, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+                return size() > maxLocations;
+            }
+        };
+    }
+
+    /**
+     * Whether a query with this projection and sort order can be answered from a snapshot.
+     * Anything else, like an unqualified _id or a different order, goes to the database.
+     */
+    static boolean canServe(String[] projection, String sortOrder) {
+        if (projection == null) {
+            return false;
+        }
+        if (sortOrder != null && !SORT_ORDER.equals(sortOrder)) {
+            return false;
+        }
+        for (String column : projection) {
+            if (resolveColumn(column) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized Snapshot get(String locationSetting) {
+        Snapshot snapshot = mSnapshots.get(locationSetting);
+        if (snapshot != null) {
+            mHits++;
+        } else {
+            mMisses++;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return the generation to hand to {@link #put(String, long, Cursor)} for a snapshot read
+     * from now on
+     */
+    synchronized long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Reads a snapshot out of a cursor over {@link #SNAPSHOT_COLUMNS} sorted by date, and keeps
+     * it unless the cache has been invalidated since {@code generation}. Locations without rows
+     * aren't kept, there would be no location id to invalidate them by.
+     */
+    Snapshot put(String locationSetting, long generation, Cursor cursor) {
+        Snapshot snapshot = new Snapshot(cursor);
+        synchronized (this) {
+            if (generation == mGeneration && snapshot.mCount > 0) {
+                mSnapshots.put(locationSetting, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Drops the snapshots of the given locations.
+     */
+    synchronized void invalidateLocations(Set<Long> locationIds) {
+        mGeneration++;
+        Iterator<Snapshot> snapshots = mSnapshots.values().iterator();
+        while (snapshots.hasNext()) {
+            if (locationIds.contains(snapshots.next().mLocationId)) {
+                snapshots.remove();
+            }
+        }
+    }
+
+    synchronized void invalidateAll() {
+        mGeneration++;
+        mSnapshots.clear();
+    }
+
+    synchronized long getHits() {
+        return mHits;
+    }
+
+    synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * @return the snapshot column a projection column maps to, -1 for anything we don't keep
+     */
+    private static int resolveColumn(String column) {
+        String weatherPrefix = WeatherEntry.TABLE_NAME + ".";
+        String locationPrefix = LocationEntry.TABLE_NAME + ".";
+        if (column.startsWith(weatherPrefix)) {
+            column = column.substring(weatherPrefix.length());
+            if (WeatherEntry._ID.equals(column)) {
+                return COL_WEATHER_ID;
+            }
+        } else if (column.startsWith(locationPrefix)) {
+            column = column.substring(locationPrefix.length());
+            if (LocationEntry._ID.equals(column)) {
+                return COL_LOC_KEY;
+            }
+        } else if (WeatherEntry._ID.equals(column)) {
+            // ambiguous between the two tables, let SQLite complain about it
+            return -1;
+        }
+        for (int i = COL_LOC_KEY; i < SNAPSHOT_COLUMNS.length; i++) {
+            if (SNAPSHOT_COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    static class Snapshot {
+        private final int mCount;
+        private final long mLocationId;
+        private final String mLocationSetting;
+        private final String mCityName;
+        private final double mCoordLat;
+        private final double mCoordLong;
+        private final long[] mIds;
+        private final long[] mDates;
+        private final String[] mShortDescs;
+        private final int[] mWeatherIds;
+        private final double[] mMinTemps;
+        private final double[] mMaxTemps;
+        private final double[] mHumidities;
+        private final double[] mPressures;
+        private final double[] mWindSpeeds;
+        private final double[] mDegrees;
+
+        private Snapshot(Cursor cursor) {
+            int count = cursor.getCount();
+            mCount = count;
+            mIds = new long[count];
+            mDates = new long[count];
+            mShortDescs = new String[count];
+            mWeatherIds = new int[count];
+            mMinTemps = new double[count];
+            mMaxTemps = new double[count];
+            mHumidities = new double[count];
+            mPressures = new double[count];
+            mWindSpeeds = new double[count];
+            mDegrees = new double[count];
+
+            long locationId = -1;
+            String locationSetting = null;
+            String cityName = null;
+            double coordLat = 0;
+            double coordLong = 0;
+            for (int i = 0; i < count && cursor.moveToPosition(i); i++) {
+                mIds[i] = cursor.getLong(COL_WEATHER_ID);
+                mDates[i] = cursor.getLong(COL_DATE);
+                mShortDescs[i] = cursor.getString(COL_SHORT_DESC);
+                mWeatherIds[i] = cursor.getInt(COL_WEATHER_CONDITION_ID);
+                mMinTemps[i] = cursor.getDouble(COL_MIN_TEMP);
+                mMaxTemps[i] = cursor.getDouble(COL_MAX_TEMP);
+                mHumidities[i] = cursor.getDouble(COL_HUMIDITY);
+                mPressures[i] = cursor.getDouble(COL_PRESSURE);
+                mWindSpeeds[i] = cursor.getDouble(COL_WIND_SPEED);
+                mDegrees[i] = cursor.getDouble(COL_DEGREES);
+                if (i == 0) {
+                    locationId = cursor.getLong(COL_LOC_KEY);
+                    locationSetting = cursor.getString(COL_LOCATION_SETTING);
+                    cityName = cursor.getString(COL_CITY_NAME);
+                    coordLat = cursor.getDouble(COL_COORD_LAT);
+                    coordLong = cursor.getDouble(COL_COORD_LONG);
+                }
+            }
+            mLocationId = locationId;
+            mLocationSetting = locationSetting;
+            mCityName = cityName;
+            mCoordLat = coordLat;
+            mCoordLong = coordLong;
+        }
+
+        /**
+         * The rows from {@code startDate} on, 0 for all of them.
+         */
+        Cursor queryFrom(String[] projection, long startDate) {
+            int from = 0;
+            if (startDate != 0) {
+                from = Arrays.binarySearch(mDates, 0, mCount, startDate);
+                if (from < 0) {
+                    from = -from - 1;
+                }
+            }
+            return buildCursor(projection, from, mCount);
+        }
+
+        /**
+         * The row of exactly {@code date}, if there is one.
+         */
+        Cursor queryDate(String[] projection, long date) {
+            int index = Arrays.binarySearch(mDates, 0, mCount, date);
+            return index < 0
+                    ? buildCursor(projection, 0, 0)
+                    : buildCursor(projection, index, index + 1);
+        }
+
+        private Cursor buildCursor(String[] projection, int from, int to) {
+            int[] columns = new int[projection.length];
+            for (int c = 0; c < projection.length; c++) {
+                columns[c] = resolveColumn(projection[c]);
+            }
+            MatrixCursor cursor = new MatrixCursor(projection, to - from);
+            for (int i = from; i < to; i++) {
+                Object[] row = new Object[columns.length];
+                for (int c = 0; c < columns.length; c++) {
+                    row[c] = getValue(i, columns[c]);
+                }
+                cursor.addRow(row);
+            }
+            return cursor;
+        }
+
+        private Object getValue(int i, int column) {
+            switch (column) {
+                case COL_WEATHER_ID:
+                    return mIds[i];
+                case COL_LOC_KEY:
+                    return mLocationId;
+                case COL_DATE:
+                    return mDates[i];
+                case COL_SHORT_DESC:
+                    return mShortDescs[i];
+                case COL_WEATHER_CONDITION_ID:
+                    return mWeatherIds[i];
+                case COL_MIN_TEMP:
+                    return mMinTemps[i];
+                case COL_MAX_TEMP:
+                    return mMaxTemps[i];
+                case COL_HUMIDITY:
+                    return mHumidities[i];
+                case COL_PRESSURE:
+                    return mPressures[i];
+                case COL_WIND_SPEED:
+                    return mWindSpeeds[i];
+                case COL_DEGREES:
+                    return mDegrees[i];
+                case COL_LOCATION_SETTING:
+                    return mLocationSetting;
+                case COL_CITY_NAME:
+                    return mCityName;
+                case COL_COORD_LAT:
+                    return mCoordLat;
+                case COL_COORD_LONG:
+                    return mCoordLong;
+                default:
+                    throw new IllegalArgumentException("Unknown snapshot column " + column);
+            }
+        }
+    }
+}
@@ -15,9 +15,15 @@
  */
 package com.example.android.sunshine.app.data;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
+
+import com.example.android.sunshine.app.R;
 
 import com.example.android.sunshine.app.data.WeatherContract.LocationEntry;
 import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
@@ -27,13 +33,75 @@ import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
  */
 public class WeatherDbHelper extends SQLiteOpenHelper {
 
-    // If you change the database schema, you must increment the database version.
-    private static final int DATABASE_VERSION = 2;
+    // If you change the database schema, you must increment the database version and add the
+    // step that brings the previous version's database up to date to MIGRATIONS.
+    static final int DATABASE_VERSION = 3;
+
+    // Versions below this one are dropped and recreated on upgrade, their data can't be carried
+    // over. Version 1 predates the schema onCreate builds.
+    static final int FIRST_MIGRATABLE_VERSION = 2;
 
     static final String DATABASE_NAME = "weather.db";
 
+    // weather rows by location first, then date: the forecast list and the widgets read the
+    // rows of one location from a date on. It also carries every weather column those screens
+    // project, so they're answered from the index alone.
+    // Lookups by date, and by date and location, are served by the UNIQUE (date, location_id)
+    // index of the table itself.
+    static final String INDEX_WEATHER_LOCATION_DATE = "weather_location_date_idx";
+
+    private final boolean mWriteAheadLogging;
+    private final int mWalAutoCheckpointPages;
+    private final int mJournalSizeLimit;
+
     public WeatherDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        Resources resources = context.getResources();
+        mWriteAheadLogging = resources.getBoolean(R.bool.db_write_ahead_logging)
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB;
+        mWalAutoCheckpointPages = resources.getInteger(R.integer.db_wal_autocheckpoint_pages);
+        mJournalSizeLimit = resources.getInteger(R.integer.db_journal_size_limit);
+    }
+
+    /**
+     * In WAL mode SQLiteDatabase keeps a pool of connections: the one holding a sync's write
+     * transaction, and read connections the provider's queries run on meanwhile, without
+     * waiting for the transaction to end. The size of that pool is up to the platform.
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        if (mWriteAheadLogging) {
+            db.setWriteAheadLoggingEnabled(true);
+        }
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        if (!mWriteAheadLogging || db.isReadOnly()) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+            // onConfigure doesn't exist before Jelly Bean
+            db.enableWriteAheadLogging();
+        }
+        // The platform checkpoints every 100 pages, which a single sync batch goes past
+        // several times over; checkpoint less often and keep the log from growing unbounded.
+        pragma(db, "wal_autocheckpoint = " + mWalAutoCheckpointPages);
+        pragma(db, "journal_size_limit = " + mJournalSizeLimit);
+    }
+
+    private static void pragma(SQLiteDatabase db, String pragma) {
+        // these pragmas answer with a row, which execSQL refuses on some versions
+        Cursor cursor = db.rawQuery("PRAGMA " + pragma, null);
+        try {
+            cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
     }
 
     @Override
@@ -81,18 +149,56 @@ public class WeatherDbHelper extends SQLiteOpenHelper {
 
         sqLiteDatabase.execSQL(SQL_CREATE_LOCATION_TABLE);
         sqLiteDatabase.execSQL(SQL_CREATE_WEATHER_TABLE);
+        createWeatherLocationDateIndex(sqLiteDatabase);
+    }
+
+    private static void createWeatherLocationDateIndex(SQLiteDatabase sqLiteDatabase) {
+        sqLiteDatabase.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_WEATHER_LOCATION_DATE +
+                " ON " + WeatherEntry.TABLE_NAME + " (" +
+                WeatherEntry.COLUMN_LOC_KEY + ", " +
+                WeatherEntry.COLUMN_DATE + ", " +
+                WeatherEntry.COLUMN_SHORT_DESC + ", " +
+                WeatherEntry.COLUMN_MAX_TEMP + ", " +
+                WeatherEntry.COLUMN_MIN_TEMP + ", " +
+                WeatherEntry.COLUMN_WEATHER_ID + ");");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase sqLiteDatabase, int oldVersion, int newVersion) {
-        // This database is only a cache for online data, so its upgrade policy is
-        // to simply to discard the data and start over
-        // Note that this only fires if you change the version number for your database.
-        // It does NOT depend on the version number for your application.
-        // If you want to update the schema without wiping data, commenting out the next 2 lines
-        // should be your top priority before modifying this method.
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
-        sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
-        onCreate(sqLiteDatabase);
+        if (oldVersion < FIRST_MIGRATABLE_VERSION) {
+            // Nothing worth keeping, discard the data and start over
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + LocationEntry.TABLE_NAME);
+            sqLiteDatabase.execSQL("DROP TABLE IF EXISTS " + WeatherEntry.TABLE_NAME);
+            onCreate(sqLiteDatabase);
+            return;
+        }
+
+        // Step through every version in between, so the stored forecasts survive the upgrade
+        // and the first launch after it is served from the database rather than the network.
+        // SQLiteOpenHelper runs this in a transaction, a failing step leaves the old version.
+        for (int version = oldVersion; version < newVersion; version++) {
+            MIGRATIONS[version - FIRST_MIGRATABLE_VERSION].migrate(sqLiteDatabase);
+        }
+    }
+
+    /**
+     * Upgrades the database from one version to the next one.
+     */
+    interface Migration {
+        void migrate(SQLiteDatabase sqLiteDatabase);
     }
+
+    // MIGRATIONS[i] upgrades version FIRST_MIGRATABLE_VERSION + i to the version after it, so
+    // there is exactly one step per version from FIRST_MIGRATABLE_VERSION up to DATABASE_VERSION.
+    // A step must keep working against the schema of its own version, so don't change one once
+    // it has been released, add another one instead.
+    static final Migration[] MIGRATIONS = {
+            // 2 -> 3: index for the location and date lookups
+            new Migration() {
+                @Override
+                public void migrate(SQLiteDatabase sqLiteDatabase) {
+                    createWeatherLocationDateIndex(sqLiteDatabase);
+                }
+            }
+    };
 }
@@ -0,0 +1,132 @@
+package com.example.android.sunshine.app.data;
+
+import android.annotation.TargetApi;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+/**
+ * Upserts weather rows through statements compiled once per transaction.
+ * <p/>
+ * Each row costs at most three statement executions and no Cursor or ContentValues: an UPDATE
+ * that only touches the stored row if one of its values differs, a key lookup to tell an
+ * unchanged row from a missing one, and the INSERT for the latter.
+ */
+@TargetApi(Build.VERSION_CODES.HONEYCOMB)
+class WeatherInserter {
+
+    // UPDATE weather SET short_desc = ?, ... WHERE date = ? AND location_id = ?
+    //     AND (short_desc IS NOT ? OR ...)
+    private static final String SQL_UPDATE_IF_CHANGED = "UPDATE " + WeatherEntry.TABLE_NAME +
+            " SET " +
+            WeatherEntry.COLUMN_SHORT_DESC + " = ?1, " +
+            WeatherEntry.COLUMN_WEATHER_ID + " = ?2, " +
+            WeatherEntry.COLUMN_MIN_TEMP + " = ?3, " +
+            WeatherEntry.COLUMN_MAX_TEMP + " = ?4, " +
+            WeatherEntry.COLUMN_HUMIDITY + " = ?5, " +
+            WeatherEntry.COLUMN_PRESSURE + " = ?6, " +
+            WeatherEntry.COLUMN_WIND_SPEED + " = ?7, " +
+            WeatherEntry.COLUMN_DEGREES + " = ?8" +
+            " WHERE " + WeatherEntry.COLUMN_DATE + " = ?9 AND " +
+            WeatherEntry.COLUMN_LOC_KEY + " = ?10 AND (" +
+            WeatherEntry.COLUMN_SHORT_DESC + " IS NOT ?1 OR " +
+            WeatherEntry.COLUMN_WEATHER_ID + " IS NOT ?2 OR " +
+            WeatherEntry.COLUMN_MIN_TEMP + " IS NOT ?3 OR " +
+            WeatherEntry.COLUMN_MAX_TEMP + " IS NOT ?4 OR " +
+            WeatherEntry.COLUMN_HUMIDITY + " IS NOT ?5 OR " +
+            WeatherEntry.COLUMN_PRESSURE + " IS NOT ?6 OR " +
+            WeatherEntry.COLUMN_WIND_SPEED + " IS NOT ?7 OR " +
+            WeatherEntry.COLUMN_DEGREES + " IS NOT ?8)";
+
+    private static final String SQL_COUNT_BY_KEY = "SELECT COUNT(*) FROM " +
+            WeatherEntry.TABLE_NAME + " WHERE " +
+            WeatherEntry.COLUMN_DATE + " = ? AND " +
+            WeatherEntry.COLUMN_LOC_KEY + " = ?";
+
+    private static final String SQL_INSERT = "INSERT INTO " + WeatherEntry.TABLE_NAME + " (" +
+            WeatherEntry.COLUMN_LOC_KEY + ", " +
+            WeatherEntry.COLUMN_DATE + ", " +
+            WeatherEntry.COLUMN_SHORT_DESC + ", " +
+            WeatherEntry.COLUMN_WEATHER_ID + ", " +
+            WeatherEntry.COLUMN_MIN_TEMP + ", " +
+            WeatherEntry.COLUMN_MAX_TEMP + ", " +
+            WeatherEntry.COLUMN_HUMIDITY + ", " +
+            WeatherEntry.COLUMN_PRESSURE + ", " +
+            WeatherEntry.COLUMN_WIND_SPEED + ", " +
+            WeatherEntry.COLUMN_DEGREES +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final int FAILED = 0;
+    static final int INSERTED = 1;
+    static final int UPDATED = 2;
+    static final int UNCHANGED = 3;
+
+    private final SQLiteStatement mUpdate;
+    private final SQLiteStatement mCount;
+    private final SQLiteStatement mInsert;
+
+    /**
+     * Compiles the statements, the caller is expected to hold a transaction on the database
+     * until {@link #close()}.
+     */
+    WeatherInserter(SQLiteDatabase db) {
+        mUpdate = db.compileStatement(SQL_UPDATE_IF_CHANGED);
+        mCount = db.compileStatement(SQL_COUNT_BY_KEY);
+        mInsert = db.compileStatement(SQL_INSERT);
+    }
+
+    /**
+     * @param date a date already normalized with {@link WeatherContract#normalizeDate(long)}
+     * @return one of {@link #INSERTED}, {@link #UPDATED}, {@link #UNCHANGED} or {@link #FAILED}
+     */
+    int upsert(long locationId, long date, String shortDesc, int weatherId, double minTemp,
+               double maxTemp, double humidity, double pressure, double windSpeed, double degrees) {
+        if (shortDesc == null) {
+            // the column is NOT NULL, there's nothing we could write
+            return FAILED;
+        }
+
+        SQLiteStatement update = mUpdate;
+        update.clearBindings();
+        update.bindString(1, shortDesc);
+        update.bindLong(2, weatherId);
+        update.bindDouble(3, minTemp);
+        update.bindDouble(4, maxTemp);
+        update.bindDouble(5, humidity);
+        update.bindDouble(6, pressure);
+        update.bindDouble(7, windSpeed);
+        update.bindDouble(8, degrees);
+        update.bindLong(9, date);
+        update.bindLong(10, locationId);
+        if (update.executeUpdateDelete() > 0) {
+            return UPDATED;
+        }
+
+        mCount.bindLong(1, date);
+        mCount.bindLong(2, locationId);
+        if (mCount.simpleQueryForLong() > 0) {
+            return UNCHANGED;
+        }
+
+        SQLiteStatement insert = mInsert;
+        insert.bindLong(1, locationId);
+        insert.bindLong(2, date);
+        insert.bindString(3, shortDesc);
+        insert.bindLong(4, weatherId);
+        insert.bindDouble(5, minTemp);
+        insert.bindDouble(6, maxTemp);
+        insert.bindDouble(7, humidity);
+        insert.bindDouble(8, pressure);
+        insert.bindDouble(9, windSpeed);
+        insert.bindDouble(10, degrees);
+        return insert.executeInsert() != -1 ? INSERTED : FAILED;
+    }
+
+    void close() {
+        mUpdate.close();
+        mCount.close();
+        mInsert.close();
+    }
+}
@@ -23,6 +23,13 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 public class WeatherProvider extends ContentProvider {
 
@@ -35,6 +42,49 @@ public class WeatherProvider extends ContentProvider {
     static final int WEATHER_WITH_LOCATION_AND_DATE = 102;
     static final int LOCATION = 300;
 
+    public static final String METHOD_LAST_BULK_INSERT_STATS = "last_bulk_insert_stats";
+    public static final String KEY_INSERTED = "inserted";
+    public static final String KEY_UPDATED = "updated";
+    public static final String KEY_UNCHANGED = "unchanged";
+
+    /**
+     * Upserts the {@link WeatherRows} passed as extras to {@link #call(String, String, Bundle)}
+     * and returns the same Bundle as {@link #METHOD_LAST_BULK_INSERT_STATS}. Requires API 11,
+     * use {@link #bulkInsert(Uri, ContentValues[])} below that.
+     */
+    public static final String METHOD_BULK_INSERT_ROWS = "bulk_insert_rows";
+
+    // every column of a weather row, apart from _id
+    private static final String[] sWeatherColumns = {
+            WeatherContract.WeatherEntry.COLUMN_LOC_KEY,
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_SHORT_DESC,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_HUMIDITY,
+            WeatherContract.WeatherEntry.COLUMN_PRESSURE,
+            WeatherContract.WeatherEntry.COLUMN_WIND_SPEED,
+            WeatherContract.WeatherEntry.COLUMN_DEGREES
+    };
+
+    private static final String LOG_TAG = WeatherProvider.class.getSimpleName();
+
+    /**
+     * Returns a Bundle with the {@link #KEY_HITS} and {@link #KEY_MISSES} counts of the forecast
+     * snapshot cache.
+     */
+    public static final String METHOD_SNAPSHOT_CACHE_STATS = "snapshot_cache_stats";
+    public static final String KEY_HITS = "hits";
+    public static final String KEY_MISSES = "misses";
+
+    // locations whose forecast is kept in memory, the preferred one plus a few recent ones
+    private static final int SNAPSHOT_CACHE_LOCATIONS = 8;
+
+    private volatile int[] mLastBulkInsertStats = new int[3];
+    private final ForecastSnapshotCache mSnapshotCache =
+            new ForecastSnapshotCache(SNAPSHOT_CACHE_LOCATIONS);
+
     private static final SQLiteQueryBuilder sWeatherByLocationSettingQueryBuilder;
 
     static{
@@ -52,26 +102,45 @@ public class WeatherProvider extends ContentProvider {
     }
 
     //location.location_setting = ?
-    private static final String sLocationSettingSelection =
+    static final String sLocationSettingSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? ";
 
     //location.location_setting = ? AND date >= ?
-    private static final String sLocationSettingWithStartDateSelection =
+    static final String sLocationSettingWithStartDateSelection =
             WeatherContract.LocationEntry.TABLE_NAME+
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " >= ? ";
 
     //location.location_setting = ? AND date = ?
-    private static final String sLocationSettingAndDaySelection =
+    static final String sLocationSettingAndDaySelection =
             WeatherContract.LocationEntry.TABLE_NAME +
                     "." + WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING + " = ? AND " +
                     WeatherContract.WeatherEntry.COLUMN_DATE + " = ? ";
 
+    //date = ? AND location_id = ?
+    private static final String sWeatherDateAndLocationIdSelection =
+            WeatherContract.WeatherEntry.COLUMN_DATE + " = ? AND " +
+                    WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? ";
+
+    /**
+     * The SQL the location setting queries run, so tests can check its query plan.
+     */
+    @TargetApi(11)
+    static String buildWeatherByLocationSettingQuery(String[] projection, String selection,
+                                                     String sortOrder) {
+        return sWeatherByLocationSettingQueryBuilder.buildQuery(
+                projection, selection, null, null, sortOrder, null);
+    }
+
     private Cursor getWeatherByLocationSetting(Uri uri, String[] projection, String sortOrder) {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long startDate = WeatherContract.WeatherEntry.getStartDateFromUri(uri);
 
+        if (ForecastSnapshotCache.canServe(projection, sortOrder)) {
+            return getSnapshot(locationSetting).queryFrom(projection, startDate);
+        }
+
         String[] selectionArgs;
         String selection;
 
@@ -98,6 +167,10 @@ public class WeatherProvider extends ContentProvider {
         String locationSetting = WeatherContract.WeatherEntry.getLocationSettingFromUri(uri);
         long date = WeatherContract.WeatherEntry.getDateFromUri(uri);
 
+        if (ForecastSnapshotCache.canServe(projection, sortOrder)) {
+            return getSnapshot(locationSetting).queryDate(projection, date);
+        }
+
         return sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
                 projection,
                 sLocationSettingAndDaySelection,
@@ -108,6 +181,27 @@ public class WeatherProvider extends ContentProvider {
         );
     }
 
+    private ForecastSnapshotCache.Snapshot getSnapshot(String locationSetting) {
+        ForecastSnapshotCache.Snapshot snapshot = mSnapshotCache.get(locationSetting);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        long generation = mSnapshotCache.getGeneration();
+        Cursor cursor = sWeatherByLocationSettingQueryBuilder.query(mOpenHelper.getReadableDatabase(),
+                ForecastSnapshotCache.SNAPSHOT_COLUMNS,
+                sLocationSettingSelection,
+                new String[]{locationSetting},
+                null,
+                null,
+                ForecastSnapshotCache.SORT_ORDER
+        );
+        try {
+            return mSnapshotCache.put(locationSetting, generation, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
     /*
         Students: Here is where you need to create the UriMatcher. This UriMatcher will
         match each URI to the WEATHER, WEATHER_WITH_LOCATION, WEATHER_WITH_LOCATION_AND_DATE,
@@ -251,6 +345,7 @@ public class WeatherProvider extends ContentProvider {
             default:
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
+        mSnapshotCache.invalidateAll();
         getContext().getContentResolver().notifyChange(uri, null);
         return returnUri;
     }
@@ -276,6 +371,7 @@ public class WeatherProvider extends ContentProvider {
         }
         // Because a null deletes all rows
         if (rowsDeleted != 0) {
+            mSnapshotCache.invalidateAll();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsDeleted;
@@ -310,6 +406,7 @@ public class WeatherProvider extends ContentProvider {
                 throw new UnsupportedOperationException("Unknown uri: " + uri);
         }
         if (rowsUpdated != 0) {
+            mSnapshotCache.invalidateAll();
             getContext().getContentResolver().notifyChange(uri, null);
         }
         return rowsUpdated;
@@ -321,27 +418,252 @@ public class WeatherProvider extends ContentProvider {
         final int match = sUriMatcher.match(uri);
         switch (match) {
             case WEATHER:
+                int[] stats = new int[3];
+                // only the locations whose forecast actually changed get notified
+                Set<Long> changedLocationIds = new HashSet<>();
                 db.beginTransaction();
-                int returnCount = 0;
+                WeatherInserter inserter = null;
                 try {
+                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+                        inserter = new WeatherInserter(db);
+                    }
                     for (ContentValues value : values) {
                         normalizeDate(value);
-                        long _id = db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, value);
-                        if (_id != -1) {
-                            returnCount++;
+                        int result = inserter != null && hasAllWeatherColumns(value)
+                                ? upsertWeather(inserter, value)
+                                : upsertWeather(db, value);
+                        if (countUpsert(stats, result)) {
+                            Long locationId = value.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+                            if (locationId != null) {
+                                changedLocationIds.add(locationId);
+                            }
                         }
                     }
                     db.setTransactionSuccessful();
                 } finally {
+                    if (inserter != null) {
+                        inserter.close();
+                    }
                     db.endTransaction();
                 }
-                getContext().getContentResolver().notifyChange(uri, null);
-                return returnCount;
+                onWeatherUpserted(db, uri, stats, changedLocationIds);
+                return stats[0] + stats[1];
             default:
                 return super.bulkInsert(uri, values);
         }
     }
 
+    @TargetApi(11)
+    private Bundle bulkInsertRows(WeatherRows rows) {
+        final SQLiteDatabase db = mOpenHelper.getWritableDatabase();
+        int[] stats = new int[3];
+        Set<Long> changedLocationIds = new HashSet<>();
+        db.beginTransaction();
+        WeatherInserter inserter = new WeatherInserter(db);
+        try {
+            for (int i = 0, count = rows.size(); i < count; i++) {
+                int result = inserter.upsert(rows.getLocationId(i),
+                        WeatherContract.normalizeDate(rows.getDate(i)),
+                        rows.getShortDesc(i),
+                        rows.getWeatherId(i),
+                        rows.getMinTemp(i),
+                        rows.getMaxTemp(i),
+                        rows.getHumidity(i),
+                        rows.getPressure(i),
+                        rows.getWindSpeed(i),
+                        rows.getDegrees(i));
+                if (countUpsert(stats, result)) {
+                    changedLocationIds.add(rows.getLocationId(i));
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            inserter.close();
+            db.endTransaction();
+        }
+        onWeatherUpserted(db, WeatherContract.WeatherEntry.CONTENT_URI, stats, changedLocationIds);
+        return buildStatsBundle(stats);
+    }
+
+    /**
+     * Adds an upsert result to the inserted, updated, unchanged counts.
+     *
+     * @return whether the row was written
+     */
+    private static boolean countUpsert(int[] stats, int result) {
+        switch (result) {
+            case WeatherInserter.INSERTED:
+                stats[0]++;
+                return true;
+            case WeatherInserter.UPDATED:
+                stats[1]++;
+                return true;
+            case WeatherInserter.UNCHANGED:
+                stats[2]++;
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void onWeatherUpserted(SQLiteDatabase db, Uri uri, int[] stats, Set<Long> changedLocationIds) {
+        if (!changedLocationIds.isEmpty()) {
+            mSnapshotCache.invalidateLocations(changedLocationIds);
+        }
+        mLastBulkInsertStats = stats;
+        Log.d(LOG_TAG, "bulkInsert: " + stats[0] + " inserted, " + stats[1] + " updated, "
+                + stats[2] + " unchanged");
+        notifyWeatherLocationsChanged(db, uri, changedLocationIds);
+    }
+
+    private static boolean hasAllWeatherColumns(ContentValues values) {
+        if (values.size() != sWeatherColumns.length) {
+            return false;
+        }
+        for (String column : sWeatherColumns) {
+            if (values.get(column) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @TargetApi(11)
+    private static int upsertWeather(WeatherInserter inserter, ContentValues values) {
+        return inserter.upsert(
+                values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY),
+                values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE),
+                values.getAsString(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC),
+                values.getAsInteger(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_HUMIDITY),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_PRESSURE),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED),
+                values.getAsDouble(WeatherContract.WeatherEntry.COLUMN_DEGREES));
+    }
+
+    /**
+     * Writes a weather row unless the stored row for the same day and location already holds
+     * the exact same values. Rows that differ are updated in place rather than going through
+     * the delete and insert of ON CONFLICT REPLACE.
+     *
+     * @return one of the {@link WeatherInserter} result constants
+     */
+    private int upsertWeather(SQLiteDatabase db, ContentValues values) {
+        Long date = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_DATE);
+        Long locationId = values.getAsLong(WeatherContract.WeatherEntry.COLUMN_LOC_KEY);
+        if (date == null || locationId == null) {
+            // can't look up what we don't have a key for, let the constraints decide
+            return db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values) != -1
+                    ? WeatherInserter.INSERTED : WeatherInserter.FAILED;
+        }
+
+        Cursor stored = db.query(WeatherContract.WeatherEntry.TABLE_NAME,
+                null,
+                sWeatherDateAndLocationIdSelection,
+                new String[]{Long.toString(date), Long.toString(locationId)},
+                null,
+                null,
+                null);
+        try {
+            if (!stored.moveToFirst()) {
+                return db.insert(WeatherContract.WeatherEntry.TABLE_NAME, null, values) != -1
+                        ? WeatherInserter.INSERTED : WeatherInserter.FAILED;
+            }
+            if (isSameAsStored(stored, values)) {
+                return WeatherInserter.UNCHANGED;
+            }
+            long id = stored.getLong(stored.getColumnIndex(WeatherContract.WeatherEntry._ID));
+            return db.update(WeatherContract.WeatherEntry.TABLE_NAME, values,
+                    WeatherContract.WeatherEntry._ID + " = ?", new String[]{Long.toString(id)}) > 0
+                    ? WeatherInserter.UPDATED : WeatherInserter.FAILED;
+        } finally {
+            stored.close();
+        }
+    }
+
+    private static boolean isSameAsStored(Cursor stored, ContentValues values) {
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            int index = stored.getColumnIndex(entry.getKey());
+            if (index == -1) {
+                return false;
+            }
+            Object value = entry.getValue();
+            if (value == null) {
+                if (!stored.isNull(index)) return false;
+            } else if (stored.isNull(index)) {
+                return false;
+            } else if (value instanceof Number) {
+                // numbers come back as whatever the column affinity made of them, so compare
+                // them as doubles; every value we store fits one exactly
+                if (stored.getDouble(index) != ((Number) value).doubleValue()) return false;
+            } else if (!value.toString().equals(stored.getString(index))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void notifyWeatherLocationsChanged(SQLiteDatabase db, Uri uri, Set<Long> locationIds) {
+        if (locationIds.isEmpty()) {
+            return;
+        }
+        for (Long locationId : locationIds) {
+            Cursor location = db.query(WeatherContract.LocationEntry.TABLE_NAME,
+                    new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                    WeatherContract.LocationEntry._ID + " = ?",
+                    new String[]{Long.toString(locationId)},
+                    null,
+                    null,
+                    null);
+            try {
+                if (location.moveToFirst()) {
+                    getContext().getContentResolver().notifyChange(
+                            WeatherContract.WeatherEntry.buildWeatherLocation(location.getString(0)), null);
+                } else {
+                    // rows pointing at an unknown location, we can't tell who's interested
+                    getContext().getContentResolver().notifyChange(uri, null);
+                    return;
+                }
+            } finally {
+                location.close();
+            }
+        }
+    }
+
+    /**
+     * The bulk insert methods answer with a Bundle holding the {@link #KEY_INSERTED},
+     * {@link #KEY_UPDATED} and {@link #KEY_UNCHANGED} row counts, of the last weather bulkInsert
+     * for {@link #METHOD_LAST_BULK_INSERT_STATS} and of the rows passed in for
+     * {@link #METHOD_BULK_INSERT_ROWS}.
+     */
+    @Override
+    @TargetApi(11)
+    public Bundle call(String method, String arg, Bundle extras) {
+        if (METHOD_LAST_BULK_INSERT_STATS.equals(method)) {
+            return buildStatsBundle(mLastBulkInsertStats);
+        }
+        if (METHOD_BULK_INSERT_ROWS.equals(method)) {
+            return bulkInsertRows(WeatherRows.fromBundle(extras));
+        }
+        if (METHOD_SNAPSHOT_CACHE_STATS.equals(method)) {
+            Bundle result = new Bundle();
+            result.putLong(KEY_HITS, mSnapshotCache.getHits());
+            result.putLong(KEY_MISSES, mSnapshotCache.getMisses());
+            return result;
+        }
+        return super.call(method, arg, extras);
+    }
+
+    private static Bundle buildStatsBundle(int[] stats) {
+        Bundle result = new Bundle();
+        result.putInt(KEY_INSERTED, stats[0]);
+        result.putInt(KEY_UPDATED, stats[1]);
+        result.putInt(KEY_UNCHANGED, stats[2]);
+        return result;
+    }
+
     // You do not need to call this method. This is a method specifically to assist the testing
     // framework in running smoothly. You can read more at:
     // http://developer.android.com/reference/android/content/ContentProvider.html#shutdown()
@@ -0,0 +1,203 @@
+package com.example.android.sunshine.app.data;
+
+import android.content.ContentValues;
+import android.os.Bundle;
+
+import com.example.android.sunshine.app.data.WeatherContract.WeatherEntry;
+
+import java.util.Arrays;
+
+/**
+ * A batch of weather rows held column by column in primitive arrays.
+ * <p/>
+ * This is what the sync adapter hands to {@link WeatherProvider} instead of one
+ * {@link ContentValues} per day; the arrays travel inside a {@link Bundle} through
+ * {@link WeatherProvider#METHOD_BULK_INSERT_ROWS} and are bound straight into the provider's
+ * compiled statements.
+ */
+public class WeatherRows
+{
+    private static final String KEY_COUNT = "count";
+
+    private int count;
+    private long[] locationId;
+    private long[] date;
+    private String[] shortDesc;
+    private int[] weatherId;
+    private double[] minTemp;
+    private double[] maxTemp;
+    private double[] humidity;
+    private double[] pressure;
+    private double[] windSpeed;
+    private double[] degrees;
+
+    public WeatherRows(int capacity)
+    {
+        capacity = Math.max(capacity, 1);
+        locationId = new long[capacity];
+        date = new long[capacity];
+        shortDesc = new String[capacity];
+        weatherId = new int[capacity];
+        minTemp = new double[capacity];
+        maxTemp = new double[capacity];
+        humidity = new double[capacity];
+        pressure = new double[capacity];
+        windSpeed = new double[capacity];
+        degrees = new double[capacity];
+    }
+
+    public void add(long locationId, long date, String shortDesc, int weatherId, double minTemp,
+                    double maxTemp, double humidity, double pressure, double windSpeed, double degrees)
+    {
+        if (count == this.date.length)
+            grow(count * 2);
+        int i = count++;
+        this.locationId[i] = locationId;
+        this.date[i] = date;
+        this.shortDesc[i] = shortDesc;
+        this.weatherId[i] = weatherId;
+        this.minTemp[i] = minTemp;
+        this.maxTemp[i] = maxTemp;
+        this.humidity[i] = humidity;
+        this.pressure[i] = pressure;
+        this.windSpeed[i] = windSpeed;
+        this.degrees[i] = degrees;
+    }
+
+    private void grow(int capacity)
+    {
+        locationId = Arrays.copyOf(locationId, capacity);
+        date = Arrays.copyOf(date, capacity);
+        shortDesc = Arrays.copyOf(shortDesc, capacity);
+        weatherId = Arrays.copyOf(weatherId, capacity);
+        minTemp = Arrays.copyOf(minTemp, capacity);
+        maxTemp = Arrays.copyOf(maxTemp, capacity);
+        humidity = Arrays.copyOf(humidity, capacity);
+        pressure = Arrays.copyOf(pressure, capacity);
+        windSpeed = Arrays.copyOf(windSpeed, capacity);
+        degrees = Arrays.copyOf(degrees, capacity);
+    }
+
+    public int size()
+    {
+        return count;
+    }
+
+    public void clear()
+    {
+        // the arrays are kept for the next batch, only the strings need letting go
+        Arrays.fill(shortDesc, 0, count, null);
+        count = 0;
+    }
+
+    public long getLocationId(int i)
+    {
+        return locationId[i];
+    }
+
+    public long getDate(int i)
+    {
+        return date[i];
+    }
+
+    public String getShortDesc(int i)
+    {
+        return shortDesc[i];
+    }
+
+    public int getWeatherId(int i)
+    {
+        return weatherId[i];
+    }
+
+    public double getMinTemp(int i)
+    {
+        return minTemp[i];
+    }
+
+    public double getMaxTemp(int i)
+    {
+        return maxTemp[i];
+    }
+
+    public double getHumidity(int i)
+    {
+        return humidity[i];
+    }
+
+    public double getPressure(int i)
+    {
+        return pressure[i];
+    }
+
+    public double getWindSpeed(int i)
+    {
+        return windSpeed[i];
+    }
+
+    public double getDegrees(int i)
+    {
+        return degrees[i];
+    }
+
+    /**
+     * Wraps the arrays in a Bundle, they are not copied.
+     */
+    public Bundle toBundle()
+    {
+        Bundle bundle = new Bundle();
+        bundle.putInt(KEY_COUNT, count);
+        bundle.putLongArray(WeatherEntry.COLUMN_LOC_KEY, locationId);
+        bundle.putLongArray(WeatherEntry.COLUMN_DATE, date);
+        bundle.putStringArray(WeatherEntry.COLUMN_SHORT_DESC, shortDesc);
+        bundle.putIntArray(WeatherEntry.COLUMN_WEATHER_ID, weatherId);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_MIN_TEMP, minTemp);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_MAX_TEMP, maxTemp);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_HUMIDITY, humidity);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_PRESSURE, pressure);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
+        bundle.putDoubleArray(WeatherEntry.COLUMN_DEGREES, degrees);
+        return bundle;
+    }
+
+    static WeatherRows fromBundle(Bundle bundle)
+    {
+        WeatherRows rows = new WeatherRows(0);
+        rows.count = bundle.getInt(KEY_COUNT);
+        rows.locationId = bundle.getLongArray(WeatherEntry.COLUMN_LOC_KEY);
+        rows.date = bundle.getLongArray(WeatherEntry.COLUMN_DATE);
+        rows.shortDesc = bundle.getStringArray(WeatherEntry.COLUMN_SHORT_DESC);
+        rows.weatherId = bundle.getIntArray(WeatherEntry.COLUMN_WEATHER_ID);
+        rows.minTemp = bundle.getDoubleArray(WeatherEntry.COLUMN_MIN_TEMP);
+        rows.maxTemp = bundle.getDoubleArray(WeatherEntry.COLUMN_MAX_TEMP);
+        rows.humidity = bundle.getDoubleArray(WeatherEntry.COLUMN_HUMIDITY);
+        rows.pressure = bundle.getDoubleArray(WeatherEntry.COLUMN_PRESSURE);
+        rows.windSpeed = bundle.getDoubleArray(WeatherEntry.COLUMN_WIND_SPEED);
+        rows.degrees = bundle.getDoubleArray(WeatherEntry.COLUMN_DEGREES);
+        return rows;
+    }
+
+    /**
+     * For devices where {@link WeatherProvider#METHOD_BULK_INSERT_ROWS} isn't available.
+     */
+    public ContentValues[] toContentValues()
+    {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++)
+        {
+            ContentValues weatherValues = new ContentValues();
+            weatherValues.put(WeatherEntry.COLUMN_LOC_KEY, locationId[i]);
+            weatherValues.put(WeatherEntry.COLUMN_DATE, date[i]);
+            weatherValues.put(WeatherEntry.COLUMN_HUMIDITY, humidity[i]);
+            weatherValues.put(WeatherEntry.COLUMN_PRESSURE, pressure[i]);
+            weatherValues.put(WeatherEntry.COLUMN_WIND_SPEED, windSpeed[i]);
+            weatherValues.put(WeatherEntry.COLUMN_DEGREES, degrees[i]);
+            weatherValues.put(WeatherEntry.COLUMN_MAX_TEMP, maxTemp[i]);
+            weatherValues.put(WeatherEntry.COLUMN_MIN_TEMP, minTemp[i]);
+            weatherValues.put(WeatherEntry.COLUMN_SHORT_DESC, shortDesc[i]);
+            weatherValues.put(WeatherEntry.COLUMN_WEATHER_ID, weatherId[i]);
+            values[i] = weatherValues;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.os.BatteryManager;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherRows;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Picks the periodic sync interval from how much the forecast has been changing and from the
+ * battery state, instead of syncing every three hours whatever the weather.
+ * <p/>
+ * Every sync of the preferred location is compared with the rows it replaces: temperature deltas
+ * and weather condition changes make up a volatility between 0 (nothing changed) and 1 (the
+ * forecast is all over the place), smoothed over recent syncs. Volatile weather shortens the
+ * interval towards the configured minimum, a stable forecast stretches it towards the maximum.
+ * Charging shortens it further, a low battery stretches it. Every decision is kept, so its
+ * effect on radio wakeups can be looked at later.
+ */
+public class AdaptiveSyncScheduler
+{
+    private static final String TAG = AdaptiveSyncScheduler.class.getSimpleName();
+
+    private static final String PREFS_NAME = "adaptive_sync";
+    private static final String VOLATILITY_KEY = "volatility";
+    private static final String INTERVAL_KEY = "interval_seconds";
+    private static final String DECISIONS_KEY = "decisions";
+    private static final String DECISION_COUNT_KEY = "decision_count";
+    private static final String RESCHEDULE_COUNT_KEY = "reschedule_count";
+
+    // Weight of the latest sync in the smoothed volatility
+    private static final float VOLATILITY_SMOOTHING = 0.3f;
+    // Average temperature change, in degrees Celsius, that counts as fully volatile
+    private static final double VOLATILE_TEMPERATURE_DELTA = 3.0;
+    // Below this the interval isn't touched, rescheduling has a cost of its own
+    private static final float MIN_INTERVAL_CHANGE = 0.1f;
+    private static final float CHARGING_FACTOR = 0.75f;
+    private static final float LOW_BATTERY_FACTOR = 2f;
+    private static final int LOW_BATTERY_PERCENT = 15;
+    private static final int MAX_RECORDED_DECISIONS = 50;
+
+    private static final String[] STORED_PROJECTION = {
+            WeatherContract.WeatherEntry.COLUMN_DATE,
+            WeatherContract.WeatherEntry.COLUMN_MAX_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_MIN_TEMP,
+            WeatherContract.WeatherEntry.COLUMN_WEATHER_ID
+    };
+
+    private final SharedPreferences prefs;
+    private final int minIntervalSeconds;
+    private final int maxIntervalSeconds;
+
+    public AdaptiveSyncScheduler(Context context)
+    {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        Resources resources = context.getResources();
+        minIntervalSeconds = resources.getInteger(R.integer.sync_min_interval_minutes) * 60;
+        maxIntervalSeconds = resources.getInteger(R.integer.sync_max_interval_minutes) * 60;
+    }
+
+    /**
+     * Compares freshly downloaded rows of the preferred location with the ones stored for it.
+     * Has to be called before the rows are written.
+     *
+     * @param first index of the location's first row in {@code rows}
+     */
+    public void recordForecast(Context context, long locationId, WeatherRows rows, int first)
+    {
+        if (first >= rows.size())
+            return;
+
+        Map<Long, Integer> newRows = new HashMap<>();
+        for (int i = first; i < rows.size(); i++)
+            newRows.put(WeatherContract.normalizeDate(rows.getDate(i)), i);
+
+        Cursor stored = context.getContentResolver().query(
+                WeatherContract.WeatherEntry.CONTENT_URI,
+                STORED_PROJECTION,
+                WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " = ? AND " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?",
+                new String[]{Long.toString(locationId),
+                        Long.toString(WeatherContract.normalizeDate(rows.getDate(first)))},
+                null);
+        if (stored == null)
+            return;
+
+        int compared = 0;
+        int conditionChanges = 0;
+        double temperatureDelta = 0;
+        try
+        {
+            while (stored.moveToNext())
+            {
+                Integer i = newRows.get(stored.getLong(0));
+                if (i == null)
+                    continue;
+                compared++;
+                temperatureDelta += Math.max(Math.abs(rows.getMaxTemp(i) - stored.getDouble(1)),
+                        Math.abs(rows.getMinTemp(i) - stored.getDouble(2)));
+                if (rows.getWeatherId(i) != stored.getInt(3))
+                    conditionChanges++;
+            }
+        }
+        finally
+        {
+            stored.close();
+        }
+        if (compared == 0)
+        {
+            // nothing to compare with, e.g. a new location, which says nothing about the weather
+            return;
+        }
+
+        float temperatureScore = (float) Math.min(1, temperatureDelta / compared / VOLATILE_TEMPERATURE_DELTA);
+        float conditionScore = (float) conditionChanges / compared;
+        recordVolatility((temperatureScore + conditionScore) / 2);
+    }
+
+    /**
+     * The server told us the forecast didn't change at all.
+     */
+    public void recordNotModified()
+    {
+        recordVolatility(0);
+    }
+
+    private void recordVolatility(float volatility)
+    {
+        float smoothed = prefs.contains(VOLATILITY_KEY)
+                ? VOLATILITY_SMOOTHING * volatility + (1 - VOLATILITY_SMOOTHING) * getVolatility()
+                : volatility;
+        prefs.edit().putFloat(VOLATILITY_KEY, smoothed).apply();
+    }
+
+    /**
+     * Smoothed volatility of the recent syncs, 0.5 until something has been measured.
+     */
+    public float getVolatility()
+    {
+        return prefs.getFloat(VOLATILITY_KEY, 0.5f);
+    }
+
+    /**
+     * Works out the interval for the current volatility and battery state, and reconfigures the
+     * periodic sync if it moved far enough from the current one.
+     */
+    public void reschedule(Context context)
+    {
+        float volatility = getVolatility();
+        int interval = Math.round(maxIntervalSeconds - (maxIntervalSeconds - minIntervalSeconds) * volatility);
+
+        int batteryPercent = -1;
+        boolean charging = false;
+        // sticky broadcast, no receiver is actually registered
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery != null)
+        {
+            int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+            int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+            if (level >= 0 && scale > 0)
+                batteryPercent = level * 100 / scale;
+            int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+            charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                    || status == BatteryManager.BATTERY_STATUS_FULL;
+        }
+        if (charging)
+            interval = Math.round(interval * CHARGING_FACTOR);
+        else if (batteryPercent >= 0 && batteryPercent <= LOW_BATTERY_PERCENT)
+            interval = Math.round(interval * LOW_BATTERY_FACTOR);
+        interval = Math.max(minIntervalSeconds, Math.min(maxIntervalSeconds, interval));
+
+        int current = getIntervalSeconds();
+        boolean reschedule = Math.abs(interval - current) > current * MIN_INTERVAL_CHANGE;
+        if (reschedule)
+            SunshineSyncAdapter.configurePeriodicSync(context, interval, interval / 3);
+        recordDecision(volatility, batteryPercent, charging, reschedule ? interval : current, reschedule);
+    }
+
+    /**
+     * The periodic sync interval currently configured, in seconds.
+     */
+    public int getIntervalSeconds()
+    {
+        return prefs.getInt(INTERVAL_KEY, SunshineSyncAdapter.SYNC_INTERVAL);
+    }
+
+    private void recordDecision(float volatility, int batteryPercent, boolean charging, int interval,
+                                boolean rescheduled)
+    {
+        // one line per decision: time, volatility, battery percent, charging, interval, rescheduled
+        String decision = System.currentTimeMillis() + "," + volatility + "," + batteryPercent + ","
+                + charging + "," + interval + "," + rescheduled;
+        String decisions = prefs.getString(DECISIONS_KEY, "");
+        decisions = decisions.isEmpty() ? decision : decisions + "\n" + decision;
+        String[] lines = decisions.split("\n");
+        if (lines.length > MAX_RECORDED_DECISIONS)
+            decisions = decisions.substring(decisions.indexOf('\n') + 1);
+
+        SharedPreferences.Editor editor = prefs.edit()
+                .putString(DECISIONS_KEY, decisions)
+                .putInt(INTERVAL_KEY, interval)
+                .putLong(DECISION_COUNT_KEY, prefs.getLong(DECISION_COUNT_KEY, 0) + 1);
+        if (rescheduled)
+            editor.putLong(RESCHEDULE_COUNT_KEY, prefs.getLong(RESCHEDULE_COUNT_KEY, 0) + 1);
+        editor.apply();
+        Log.d(TAG, "Volatility " + volatility + ", battery " + batteryPercent + "%"
+                + (charging ? " charging" : "") + ": sync every " + interval / 60 + " minutes"
+                + (rescheduled ? " (rescheduled)" : ""));
+    }
+
+    /**
+     * The most recent decisions, oldest first, one per line as
+     * {@code time,volatility,batteryPercent,charging,intervalSeconds,rescheduled}.
+     */
+    public String getDecisions()
+    {
+        return prefs.getString(DECISIONS_KEY, "");
+    }
+
+    public long getDecisionCount()
+    {
+        return prefs.getLong(DECISION_COUNT_KEY, 0);
+    }
+
+    public long getRescheduleCount()
+    {
+        return prefs.getLong(RESCHEDULE_COUNT_KEY, 0);
+    }
+}
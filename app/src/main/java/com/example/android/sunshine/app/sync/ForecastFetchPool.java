@@ -0,0 +1,137 @@
+package com.example.android.sunshine.app.sync;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Fetches the forecast for several locations at once.
+ * <p/>
+ * Requests run on a fixed size worker pool, and on top of that every host gets its own permit
+ * count, so a large pool can't hammer a single API endpoint.
+ */
+public class ForecastFetchPool
+{
+    private static final String TAG = ForecastFetchPool.class.getSimpleName();
+
+    private final ForecastFetcher fetcher;
+    private final ExecutorService executor;
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> hostPermits = new HashMap<>();
+
+    public ForecastFetchPool(ForecastFetcher fetcher, int poolSize, int maxRequestsPerHost)
+    {
+        this.fetcher = fetcher;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        executor = Executors.newFixedThreadPool(poolSize);
+    }
+
+    /**
+     * Queues a fetch for every location setting.
+     *
+     * @return one future per location setting, in the same order
+     */
+    public List<Future<Result>> fetchAll(List<String> locationSettings)
+    {
+        List<Future<Result>> futures = new ArrayList<>(locationSettings.size());
+        for (final String locationSetting : locationSettings)
+        {
+            futures.add(executor.submit(new Callable<Result>()
+            {
+                @Override
+                public Result call() throws Exception
+                {
+                    return fetch(locationSetting);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private Result fetch(String locationSetting) throws InterruptedException
+    {
+        Semaphore permits;
+        try
+        {
+            permits = getHostPermits(fetcher.buildUrl(locationSetting).getHost());
+        }
+        catch (IOException e)
+        {
+            return new Result(locationSetting, null, e, 0);
+        }
+
+        permits.acquire();
+        long start = SystemClock.elapsedRealtime();
+        try
+        {
+            ForecastResponse forecast = fetcher.fetch(locationSetting);
+            return new Result(locationSetting, forecast, null, SystemClock.elapsedRealtime() - start);
+        }
+        catch (Exception e)
+        {
+            Log.e(TAG, "Failed to fetch " + locationSetting, e);
+            return new Result(locationSetting, null, e, 0);
+        }
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    private synchronized Semaphore getHostPermits(String host)
+    {
+        Semaphore permits = hostPermits.get(host);
+        if (permits == null)
+        {
+            permits = new Semaphore(maxRequestsPerHost, true);
+            hostPermits.put(host, permits);
+        }
+        return permits;
+    }
+
+    /**
+     * Stops the workers once the queued fetches are done.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+
+    /**
+     * Drops the queued fetches and interrupts the ones running.
+     */
+    public void shutdownNow()
+    {
+        executor.shutdownNow();
+    }
+
+    public static class Result
+    {
+        public final String locationSetting;
+        /**
+         * null if the fetch failed or the server sent an empty body
+         */
+        public final ForecastResponse forecast;
+        public final Exception error;
+        // time spent downloading and parsing the forecast
+        public final long fetchMillis;
+
+        Result(String locationSetting, ForecastResponse forecast, Exception error, long fetchMillis)
+        {
+            this.locationSetting = locationSetting;
+            this.forecast = forecast;
+            this.error = error;
+            this.fetchMillis = fetchMillis;
+        }
+    }
+}
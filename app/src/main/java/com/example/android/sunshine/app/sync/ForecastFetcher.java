@@ -0,0 +1,200 @@
+package com.example.android.sunshine.app.sync;
+
+import android.net.Uri;
+import android.os.Build;
+
+import com.example.android.sunshine.app.BuildConfig;
+
+import org.json.JSONException;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Downloads and parses the OpenWeatherMap daily forecast for a single location setting.
+ * Instances hold no per request state, so one fetcher can be shared between threads.
+ */
+public class ForecastFetcher
+{
+    // Construct the URL for the OpenWeatherMap query
+    // Possible parameters are avaiable at OWM's forecast API page, at
+    // http://openweathermap.org/API#forecast
+    static final String FORECAST_BASE_URL =
+            "http://api.openweathermap.org/data/2.5/forecast/daily?";
+    private static final String QUERY_PARAM = "q";
+    private static final String FORMAT_PARAM = "mode";
+    private static final String UNITS_PARAM = "units";
+    private static final String DAYS_PARAM = "cnt";
+    private static final String APPID_PARAM = "APPID";
+
+    private static final String FORMAT = "json";
+    private static final String UNITS = "metric";
+    private static final int NUM_DAYS = 14;
+
+    private final String baseUrl;
+    private final ForecastValidatorStore validatorStore;
+
+    /**
+     * @param validatorStore validators to send along with each request, or null to always
+     *                       download the full forecast
+     */
+    public ForecastFetcher(ForecastValidatorStore validatorStore)
+    {
+        this(FORECAST_BASE_URL, validatorStore);
+    }
+
+    ForecastFetcher(String baseUrl, ForecastValidatorStore validatorStore)
+    {
+        this.baseUrl = baseUrl;
+        this.validatorStore = validatorStore;
+    }
+
+    URL buildUrl(String locationQuery) throws IOException
+    {
+        Uri builtUri = Uri.parse(baseUrl).buildUpon()
+                .appendQueryParameter(QUERY_PARAM, locationQuery)
+                .appendQueryParameter(FORMAT_PARAM, FORMAT)
+                .appendQueryParameter(UNITS_PARAM, UNITS)
+                .appendQueryParameter(DAYS_PARAM, Integer.toString(NUM_DAYS))
+                .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
+                .build();
+
+        return new URL(builtUri.toString());
+    }
+
+    /**
+     * @return the parsed forecast, a forecast flagged {@link ForecastResponse#notModified} if the
+     * server says the one we stored last is still current, or null if the server answered with an
+     * empty body
+     */
+    public ForecastResponse fetch(String locationQuery) throws IOException, JSONException
+    {
+        // These two need to be declared outside the try/catch
+        // so that they can be closed in the finally block.
+        HttpURLConnection urlConnection = null;
+        BufferedReader reader = null;
+        try
+        {
+            // Create the request to OpenWeatherMap, and open the connection
+            urlConnection = (HttpURLConnection) buildUrl(locationQuery).openConnection();
+            urlConnection.setRequestMethod("GET");
+            if (validatorStore != null)
+            {
+                String etag = validatorStore.getETag(locationQuery);
+                if (etag != null)
+                    urlConnection.setRequestProperty("If-None-Match", etag);
+                String lastModified = validatorStore.getLastModified(locationQuery);
+                if (lastModified != null)
+                    urlConnection.setRequestProperty("If-Modified-Since", lastModified);
+            }
+            urlConnection.connect();
+
+            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED)
+            {
+                ForecastResponse forecast = new ForecastResponse();
+                forecast.notModified = true;
+                return forecast;
+            }
+
+            InputStream inputStream = urlConnection.getInputStream();
+            if (inputStream == null)
+            {
+                // Nothing to do.
+                return null;
+            }
+            CountingInputStream countingStream = new CountingInputStream(inputStream);
+            reader = new BufferedReader(new InputStreamReader(countingStream));
+
+            ForecastResponse forecast = parse(reader);
+            if (forecast != null)
+            {
+                forecast.etag = urlConnection.getHeaderField("ETag");
+                forecast.lastModified = urlConnection.getHeaderField("Last-Modified");
+                forecast.byteCount = countingStream.count;
+            }
+            return forecast;
+        }
+        finally
+        {
+            if (urlConnection != null)
+            {
+                urlConnection.disconnect();
+            }
+            if (reader != null)
+            {
+                try
+                {
+                    reader.close();
+                }
+                catch (final IOException e)
+                {
+                    // nothing else we can do about it, the forecast has been read already
+                }
+            }
+        }
+    }
+
+    private static ForecastResponse parse(BufferedReader reader) throws IOException, JSONException
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+        {
+            // Pull the forecast straight off the connection, an empty stream ends up
+            // as an EOFException and is handled like any other IO failure.
+            return ForecastJsonParser.parse(reader);
+        }
+
+        // Read the input stream into a String
+        StringBuilder buffer = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
+            // But it does make debugging a *lot* easier if you print out the completed
+            // buffer for debugging.
+            buffer.append(line).append('\n');
+        }
+
+        if (buffer.length() == 0)
+        {
+            // Stream was empty.  No point in parsing.
+            return null;
+        }
+        return ForecastJsonParser.parseTree(buffer.toString());
+    }
+
+    /**
+     * Counts the bytes of the payload, so we know what a 304 saves us next time.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        long count;
+
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b != -1)
+                count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException
+        {
+            int read = super.read(buffer, offset, length);
+            if (read > 0)
+                count += read;
+            return read;
+        }
+    }
+}
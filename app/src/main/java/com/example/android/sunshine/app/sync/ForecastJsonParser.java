@@ -0,0 +1,386 @@
+package com.example.android.sunshine.app.sync;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+
+/**
+ * Parses the OpenWeatherMap daily forecast response into a {@link ForecastResponse}.
+ * <p/>
+ * {@link #parse(Reader)} pulls tokens straight from the connection stream, so the payload is never
+ * held as a String nor turned into a tree. {@link #parseTree(String)} is the original
+ * {@link JSONObject} based path, kept for devices without {@link JsonReader} (pre Honeycomb).
+ */
+public class ForecastJsonParser
+{
+    // Location information
+    private static final String OWM_CITY = "city";
+    private static final String OWM_CITY_NAME = "name";
+    private static final String OWM_COORD = "coord";
+
+    // Location coordinate
+    private static final String OWM_LATITUDE = "lat";
+    private static final String OWM_LONGITUDE = "lon";
+
+    // Weather information.  Each day's forecast info is an element of the "list" array.
+    private static final String OWM_LIST = "list";
+
+    private static final String OWM_PRESSURE = "pressure";
+    private static final String OWM_HUMIDITY = "humidity";
+    private static final String OWM_WINDSPEED = "speed";
+    private static final String OWM_WIND_DIRECTION = "deg";
+
+    // All temperatures are children of the "temp" object.
+    private static final String OWM_TEMPERATURE = "temp";
+    private static final String OWM_MAX = "max";
+    private static final String OWM_MIN = "min";
+
+    private static final String OWM_WEATHER = "weather";
+    private static final String OWM_DESCRIPTION = "main";
+    private static final String OWM_WEATHER_ID = "id";
+
+    private static final String OWM_MESSAGE_CODE = "cod";
+
+    // What the streaming path has seen of a day, every one of these is required like
+    // parseTree requires them
+    private static final int SEEN_PRESSURE = 1;
+    private static final int SEEN_HUMIDITY = 1 << 1;
+    private static final int SEEN_WINDSPEED = 1 << 2;
+    private static final int SEEN_WIND_DIRECTION = 1 << 3;
+    private static final int SEEN_MAX = 1 << 4;
+    private static final int SEEN_MIN = 1 << 5;
+    private static final int SEEN_DESCRIPTION = 1 << 6;
+    private static final int SEEN_WEATHER_ID = 1 << 7;
+    private static final int SEEN_DAY = (1 << 8) - 1;
+    // Indexed by the bit number of the SEEN_ flags
+    private static final String[] DAY_FIELD_NAMES = {
+            OWM_PRESSURE, OWM_HUMIDITY, OWM_WINDSPEED, OWM_WIND_DIRECTION,
+            OWM_MAX, OWM_MIN, OWM_DESCRIPTION, OWM_WEATHER_ID
+    };
+
+    private ForecastJsonParser()
+    {
+    }
+
+    /**
+     * Streams the forecast out of the given reader. The reader is not closed.
+     *
+     * @throws IOException   if the stream could not be read (including an empty stream)
+     * @throws JSONException if the payload is not a valid forecast response
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public static ForecastResponse parse(Reader in) throws IOException, JSONException
+    {
+        ForecastResponse forecast = new ForecastResponse();
+        JsonReader reader = new JsonReader(in);
+        try
+        {
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (OWM_MESSAGE_CODE.equals(name))
+                {
+                    forecast.messageCode = reader.nextInt();
+                }
+                else if (OWM_CITY.equals(name))
+                {
+                    readCity(reader, forecast);
+                }
+                else if (OWM_LIST.equals(name))
+                {
+                    readList(reader, forecast);
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        catch (IllegalStateException | NumberFormatException e)
+        {
+            // JsonReader reports unexpected tokens and malformed numbers as runtime exceptions
+            throw new JSONException(e.getMessage());
+        }
+        catch (MalformedJsonException e)
+        {
+            // this is an IOException, but it means the server sent us garbage
+            throw new JSONException(e.getMessage());
+        }
+        validate(forecast);
+        return forecast;
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readCity(JsonReader reader, ForecastResponse forecast)
+            throws IOException, JSONException
+    {
+        forecast.hasCity = true;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (OWM_CITY_NAME.equals(name))
+            {
+                forecast.cityName = reader.nextString();
+            }
+            else if (OWM_COORD.equals(name))
+            {
+                boolean hasLatitude = false;
+                boolean hasLongitude = false;
+                reader.beginObject();
+                while (reader.hasNext())
+                {
+                    String coordName = reader.nextName();
+                    if (OWM_LATITUDE.equals(coordName))
+                    {
+                        forecast.cityLatitude = reader.nextDouble();
+                        hasLatitude = true;
+                    }
+                    else if (OWM_LONGITUDE.equals(coordName))
+                    {
+                        forecast.cityLongitude = reader.nextDouble();
+                        hasLongitude = true;
+                    }
+                    else
+                    {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+                if (!hasLatitude)
+                    throw new JSONException("No value for " + OWM_LATITUDE);
+                if (!hasLongitude)
+                    throw new JSONException("No value for " + OWM_LONGITUDE);
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static void readList(JsonReader reader, ForecastResponse forecast)
+            throws IOException, JSONException
+    {
+        forecast.hasList = true;
+        reader.beginArray();
+        while (reader.hasNext())
+        {
+            int day = forecast.nextDay();
+            int seen = 0;
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (OWM_PRESSURE.equals(name))
+                {
+                    forecast.pressure[day] = reader.nextDouble();
+                    seen |= SEEN_PRESSURE;
+                }
+                else if (OWM_HUMIDITY.equals(name))
+                {
+                    forecast.humidity[day] = reader.nextInt();
+                    seen |= SEEN_HUMIDITY;
+                }
+                else if (OWM_WINDSPEED.equals(name))
+                {
+                    forecast.windSpeed[day] = reader.nextDouble();
+                    seen |= SEEN_WINDSPEED;
+                }
+                else if (OWM_WIND_DIRECTION.equals(name))
+                {
+                    forecast.windDirection[day] = reader.nextDouble();
+                    seen |= SEEN_WIND_DIRECTION;
+                }
+                else if (OWM_TEMPERATURE.equals(name))
+                {
+                    seen |= readTemperature(reader, forecast, day);
+                }
+                else if (OWM_WEATHER.equals(name))
+                {
+                    seen |= readWeather(reader, forecast, day);
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            checkDaySeen(seen, day);
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Fails a day missing any of its fields, rather than storing a 0 for it.
+     */
+    private static void checkDaySeen(int seen, int day) throws JSONException
+    {
+        int missing = ~seen & SEEN_DAY;
+        if (missing != 0)
+            throw new JSONException("No value for " + DAY_FIELD_NAMES[Integer.numberOfTrailingZeros(missing)]
+                    + " at " + day);
+    }
+
+    /**
+     * @return the SEEN_ flags of the temperatures read
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static int readTemperature(JsonReader reader, ForecastResponse forecast, int day)
+            throws IOException
+    {
+        int seen = 0;
+        reader.beginObject();
+        while (reader.hasNext())
+        {
+            String name = reader.nextName();
+            if (OWM_MAX.equals(name))
+            {
+                forecast.high[day] = reader.nextDouble();
+                seen |= SEEN_MAX;
+            }
+            else if (OWM_MIN.equals(name))
+            {
+                forecast.low[day] = reader.nextDouble();
+                seen |= SEEN_MIN;
+            }
+            else
+            {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return seen;
+    }
+
+    /**
+     * @return the SEEN_ flags of the weather fields read
+     */
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    private static int readWeather(JsonReader reader, ForecastResponse forecast, int day)
+            throws IOException
+    {
+        int seen = 0;
+        // Description is in a child array called "weather", which is 1 element long.
+        // That element also contains a weather code.
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext())
+        {
+            if (!first || reader.peek() != JsonToken.BEGIN_OBJECT)
+            {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+            reader.beginObject();
+            while (reader.hasNext())
+            {
+                String name = reader.nextName();
+                if (OWM_DESCRIPTION.equals(name))
+                {
+                    forecast.description[day] = reader.nextString();
+                    seen |= SEEN_DESCRIPTION;
+                }
+                else if (OWM_WEATHER_ID.equals(name))
+                {
+                    forecast.weatherId[day] = reader.nextInt();
+                    seen |= SEEN_WEATHER_ID;
+                }
+                else
+                {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+        return seen;
+    }
+
+    /**
+     * Parses the whole response through a {@link JSONObject} tree.
+     */
+    public static ForecastResponse parseTree(String forecastJsonStr) throws JSONException
+    {
+        ForecastResponse forecast = new ForecastResponse();
+        JSONObject forecastJson = new JSONObject(forecastJsonStr);
+
+        if (forecastJson.has(OWM_MESSAGE_CODE))
+            forecast.messageCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+
+        if (forecastJson.has(OWM_CITY))
+        {
+            forecast.hasCity = true;
+            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
+            forecast.cityName = cityJson.getString(OWM_CITY_NAME);
+
+            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
+            forecast.cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
+            forecast.cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+        }
+
+        if (forecastJson.has(OWM_LIST))
+        {
+            forecast.hasList = true;
+            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
+            for (int i = 0; i < weatherArray.length(); i++)
+            {
+                int day = forecast.nextDay();
+                JSONObject dayForecast = weatherArray.getJSONObject(i);
+
+                forecast.pressure[day] = dayForecast.getDouble(OWM_PRESSURE);
+                forecast.humidity[day] = dayForecast.getInt(OWM_HUMIDITY);
+                forecast.windSpeed[day] = dayForecast.getDouble(OWM_WINDSPEED);
+                forecast.windDirection[day] = dayForecast.getDouble(OWM_WIND_DIRECTION);
+
+                JSONObject weatherObject =
+                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
+                forecast.description[day] = weatherObject.getString(OWM_DESCRIPTION);
+                forecast.weatherId[day] = weatherObject.getInt(OWM_WEATHER_ID);
+
+                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
+                forecast.high[day] = temperatureObject.getDouble(OWM_MAX);
+                forecast.low[day] = temperatureObject.getDouble(OWM_MIN);
+            }
+        }
+
+        validate(forecast);
+        return forecast;
+    }
+
+    /**
+     * A successful response must carry both the city and the list of days. Error responses
+     * only need the message code, the caller decides what to do with it.
+     */
+    private static void validate(ForecastResponse forecast) throws JSONException
+    {
+        boolean isError = forecast.messageCode != ForecastResponse.NO_MESSAGE_CODE
+                && forecast.messageCode != HttpURLConnection.HTTP_OK;
+        if (isError)
+            return;
+        if (!forecast.hasCity || forecast.cityName == null)
+            throw new JSONException("No value for " + OWM_CITY);
+        if (!forecast.hasList)
+            throw new JSONException("No value for " + OWM_LIST);
+        for (int i = 0; i < forecast.dayCount; i++)
+        {
+            if (forecast.description[i] == null)
+                throw new JSONException("No value for " + OWM_WEATHER + " at " + i);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.android.sunshine.app.sync;
+
+import java.util.Arrays;
+
+/**
+ * Parsed OpenWeatherMap daily forecast response.
+ * <p/>
+ * Day values are kept in parallel primitive arrays indexed by the position of the day in the
+ * response, so parsing a payload costs a handful of arrays instead of an object per JSON node.
+ */
+public class ForecastResponse
+{
+    public static final int NO_MESSAGE_CODE = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The server answered 304, nothing else in this response is set.
+     */
+    public boolean notModified;
+    // HTTP validators and size of the payload, null/0 if the server didn't send them
+    public String etag;
+    public String lastModified;
+    public long byteCount;
+
+    public int messageCode = NO_MESSAGE_CODE;
+    public boolean hasCity;
+    public String cityName;
+    public double cityLatitude;
+    public double cityLongitude;
+
+    public boolean hasList;
+    public int dayCount;
+    public double[] pressure = new double[INITIAL_CAPACITY];
+    public int[] humidity = new int[INITIAL_CAPACITY];
+    public double[] windSpeed = new double[INITIAL_CAPACITY];
+    public double[] windDirection = new double[INITIAL_CAPACITY];
+    public double[] high = new double[INITIAL_CAPACITY];
+    public double[] low = new double[INITIAL_CAPACITY];
+    public String[] description = new String[INITIAL_CAPACITY];
+    public int[] weatherId = new int[INITIAL_CAPACITY];
+
+    /**
+     * Reserves the next day slot, growing the arrays if needed.
+     *
+     * @return index of the reserved day
+     */
+    int nextDay()
+    {
+        if (dayCount == weatherId.length)
+        {
+            int capacity = dayCount * 2;
+            pressure = Arrays.copyOf(pressure, capacity);
+            humidity = Arrays.copyOf(humidity, capacity);
+            windSpeed = Arrays.copyOf(windSpeed, capacity);
+            windDirection = Arrays.copyOf(windDirection, capacity);
+            high = Arrays.copyOf(high, capacity);
+            low = Arrays.copyOf(low, capacity);
+            description = Arrays.copyOf(description, capacity);
+            weatherId = Arrays.copyOf(weatherId, capacity);
+        }
+        return dayCount++;
+    }
+}
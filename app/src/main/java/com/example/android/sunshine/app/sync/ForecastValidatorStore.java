@@ -0,0 +1,137 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Keeps the HTTP validators (ETag and Last-Modified) of the last forecast downloaded for each
+ * location setting, so the next sync can ask the server whether anything changed at all.
+ * <p/>
+ * It also counts what the 304 answers saved us: the size of the payload we didn't download and
+ * the time the last full sync of that location took.
+ */
+public class ForecastValidatorStore
+{
+    private static final String PREFS_NAME = "forecast_validators";
+
+    private static final String ETAG_PREFIX = "etag_";
+    private static final String LAST_MODIFIED_PREFIX = "last_modified_";
+    private static final String BYTES_PREFIX = "bytes_";
+    private static final String SYNC_MILLIS_PREFIX = "sync_millis_";
+    // every key kept per location setting
+    private static final String[] LOCATION_PREFIXES = {
+            ETAG_PREFIX, LAST_MODIFIED_PREFIX, BYTES_PREFIX, SYNC_MILLIS_PREFIX
+    };
+
+    private static final String NOT_MODIFIED_COUNT_KEY = "not_modified_count";
+    private static final String SAVED_BYTES_KEY = "saved_bytes";
+    private static final String SAVED_SYNC_MILLIS_KEY = "saved_sync_millis";
+
+    private final SharedPreferences prefs;
+
+    public ForecastValidatorStore(Context context)
+    {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public String getETag(String locationSetting)
+    {
+        return prefs.getString(ETAG_PREFIX + locationSetting, null);
+    }
+
+    public String getLastModified(String locationSetting)
+    {
+        return prefs.getString(LAST_MODIFIED_PREFIX + locationSetting, null);
+    }
+
+    /**
+     * Remembers the validators of a forecast that has been stored in the database.
+     *
+     * @param syncMillis how long downloading and storing the forecast took
+     */
+    public void recordFetched(String locationSetting, ForecastResponse forecast, long syncMillis)
+    {
+        SharedPreferences.Editor editor = prefs.edit();
+        putOrRemove(editor, ETAG_PREFIX + locationSetting, forecast.etag);
+        putOrRemove(editor, LAST_MODIFIED_PREFIX + locationSetting, forecast.lastModified);
+        editor.putLong(BYTES_PREFIX + locationSetting, forecast.byteCount);
+        editor.putLong(SYNC_MILLIS_PREFIX + locationSetting, syncMillis);
+        editor.apply();
+    }
+
+    /**
+     * Books a 304 for the location as the payload size and sync time of its last full sync.
+     */
+    public synchronized void recordNotModified(String locationSetting)
+    {
+        prefs.edit()
+                .putLong(NOT_MODIFIED_COUNT_KEY, getNotModifiedCount() + 1)
+                .putLong(SAVED_BYTES_KEY, getSavedBytes()
+                        + prefs.getLong(BYTES_PREFIX + locationSetting, 0))
+                .putLong(SAVED_SYNC_MILLIS_KEY, getSavedSyncMillis()
+                        + prefs.getLong(SYNC_MILLIS_PREFIX + locationSetting, 0))
+                .apply();
+    }
+
+    /**
+     * Drops the validators and payload stats of every location without forecast rows in the
+     * database. A 304 for those would leave them with nothing to show, e.g. after the database
+     * has been recreated.
+     */
+    public void retainOnly(Collection<String> cachedLocationSettings)
+    {
+        SharedPreferences.Editor editor = prefs.edit();
+        boolean changed = false;
+        for (Map.Entry<String, ?> entry : prefs.getAll().entrySet())
+        {
+            String key = entry.getKey();
+            String locationSetting = getLocationSetting(key);
+            if (locationSetting != null && !cachedLocationSettings.contains(locationSetting))
+            {
+                editor.remove(key);
+                changed = true;
+            }
+        }
+        if (changed)
+            editor.apply();
+    }
+
+    /**
+     * @return the location setting a per-location key belongs to, null for any other key
+     */
+    private static String getLocationSetting(String key)
+    {
+        for (String prefix : LOCATION_PREFIXES)
+        {
+            if (key.startsWith(prefix))
+                return key.substring(prefix.length());
+        }
+        return null;
+    }
+
+    public long getNotModifiedCount()
+    {
+        return prefs.getLong(NOT_MODIFIED_COUNT_KEY, 0);
+    }
+
+    public long getSavedBytes()
+    {
+        return prefs.getLong(SAVED_BYTES_KEY, 0);
+    }
+
+    public long getSavedSyncMillis()
+    {
+        return prefs.getLong(SAVED_SYNC_MILLIS_KEY, 0);
+    }
+
+    private static void putOrRemove(SharedPreferences.Editor editor, String key, String value)
+    {
+        if (value == null)
+            editor.remove(key);
+        else
+            editor.putString(key, value);
+    }
+}
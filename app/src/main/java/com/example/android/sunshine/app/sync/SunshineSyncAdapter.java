@@ -12,6 +12,7 @@ import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
 import android.content.Intent;
+import android.content.PeriodicSync;
 import android.content.SharedPreferences;
 import android.content.SyncRequest;
 import android.content.SyncResult;
@@ -20,55 +21,44 @@ import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.annotation.IntDef;
-import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.TaskStackBuilder;
 import android.text.format.Time;
 import android.util.Log;
 
 import com.bumptech.glide.Glide;
-import com.example.android.sunshine.app.BuildConfig;
 import com.example.android.sunshine.app.ForecastDataSet;
 import com.example.android.sunshine.app.MainActivity;
 import com.example.android.sunshine.app.R;
 import com.example.android.sunshine.app.Utility;
+import com.example.android.sunshine.app.WearablePublishQueue;
 import com.example.android.sunshine.app.data.WeatherContract;
+import com.example.android.sunshine.app.data.WeatherProvider;
+import com.example.android.sunshine.app.data.WeatherRows;
 import com.example.android.sunshine.app.muzei.WeatherMuzeiSource;
-import com.google.android.gms.common.ConnectionResult;
-import com.google.android.gms.common.api.GoogleApiClient;
-import com.google.android.gms.wearable.PutDataMapRequest;
-import com.google.android.gms.wearable.PutDataRequest;
-import com.google.android.gms.wearable.Wearable;
+import com.example.android.sunshine.shared.PackedForecast;
 
-import org.json.JSONArray;
 import org.json.JSONException;
-import org.json.JSONObject;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.Vector;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Future;
 
 public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
-        implements GoogleApiClient.ConnectionCallbacks,
-        GoogleApiClient.OnConnectionFailedListener
 {
     public static final String ACTION_DATA_UPDATED =
             "com.example.android.sunshine.app.ACTION_DATA_UPDATED";
-    // Interval at which to sync with the weather, in seconds.
+    // Interval at which to sync with the weather until AdaptiveSyncScheduler picks one, in seconds.
     // 60 seconds (1 minute) * 180 = 3 hours
     public static final int SYNC_INTERVAL = 60 * 180;
     public static final int SYNC_FLEXTIME = SYNC_INTERVAL / 3;
@@ -77,6 +67,18 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
     public static final int LOCATION_STATUS_SERVER_INVALID = 2;
     public static final int LOCATION_STATUS_UNKNOWN = 3;
     public static final int LOCATION_STATUS_INVALID = 4;
+    /**
+     * Sync extra asking for every stored location to be refreshed, not just the preferred one.
+     * Periodic syncs refresh every location without it.
+     */
+    public static final String SYNC_EXTRAS_ALL_LOCATIONS = "sync_all_locations";
+    // Concurrent requests allowed against a single host, whatever the pool size
+    private static final int SYNC_MAX_REQUESTS_PER_HOST = 2;
+    // Workers fetching locations concurrently during a sync of all locations. Every location
+    // goes to the same host, so more workers than it allows would only sit blocked.
+    private static final int SYNC_POOL_SIZE = SYNC_MAX_REQUESTS_PER_HOST;
+    // Locations written per bulkInsert transaction
+    private static final int SYNC_BATCH_SIZE = 8;
     private static final long DAY_IN_MILLIS = 1000 * 60 * 60 * 24;
     private static final int WEATHER_NOTIFICATION_ID = 3004;
     private static final String[] NOTIFY_WEATHER_PROJECTION = new String[]{
@@ -91,63 +93,84 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
     private static final int INDEX_MIN_TEMP = 2;
     private static final int INDEX_SHORT_DESC = 3;
 
-    private static final String WEATHER_TYPE_KEY = "weather_type_key";
-    private static final String MAX_TEMP_KEY = "max_temperature_key";
-    private static final String MIN_TEMP_KEY = "min_temperature_key";
-    private static final String WIND_ANGLE_KEY = "wind_angle_key";
-    private static final String WIND_SPEED_KEY = "wind_speed_key";
-    private static final String IS_METRIC_KEY = "is_metric_key";
-    private static final String SUNSHINE_CONFIG = "/sunshine_wear_config";
-    private static final String REQUEST_DATA_KEY = "request_data_key";
-
-    private static final String TAG = SunshineSyncAdapter.class.getSimpleName();
     public final String LOG_TAG = SunshineSyncAdapter.class.getSimpleName();
-    private GoogleApiClient googleApiClient;
-    private ForecastDataSet wearableDataToSync;
+    private final ForecastValidatorStore validatorStore;
+    private final ForecastFetcher forecastFetcher;
+    private final AdaptiveSyncScheduler adaptiveScheduler;
 
     public SunshineSyncAdapter(Context context, boolean autoInitialize)
     {
         super(context, autoInitialize);
-        googleApiClient = new GoogleApiClient.Builder(getContext())
-                .addConnectionCallbacks(this)
-                .addOnConnectionFailedListener(this)
-                .addApi(Wearable.API)
-                .build();
+        validatorStore = new ForecastValidatorStore(context);
+        forecastFetcher = new ForecastFetcher(validatorStore);
+        adaptiveScheduler = new AdaptiveSyncScheduler(context);
     }
 
     /**
-     * Helper method to schedule the sync adapter periodic execution
+     * Helper method to schedule the sync adapter periodic execution, replacing the periodic sync
+     * scheduled before
      */
     public static void configurePeriodicSync(Context context, int syncInterval, int flexTime)
     {
         Account account = getSyncAccount(context);
         String authority = context.getString(R.string.content_authority);
+        // Periodic syncs are keyed by their extras as well, so they keep the empty extras they
+        // always had and onPerformSync tells them apart. Whatever was registered before goes
+        // first, be it the original one, one with the all locations extra or the last adaptive
+        // one, so only this one is left to wake the radio.
+        for (PeriodicSync periodicSync : ContentResolver.getPeriodicSyncs(account, authority))
+            ContentResolver.removePeriodicSync(account, authority, periodicSync.extras);
+        Bundle extras = new Bundle();
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
         {
             // we can enable inexact timers in our periodic sync
             SyncRequest request = new SyncRequest.Builder().
                     syncPeriodic(syncInterval, flexTime).
                     setSyncAdapter(account, authority).
-                    setExtras(new Bundle()).build();
+                    setExtras(extras).build();
             ContentResolver.requestSync(request);
         }
         else
         {
             ContentResolver.addPeriodicSync(account,
-                    authority, new Bundle(), syncInterval);
+                    authority, extras, syncInterval);
         }
     }
 
     /**
-     * Helper method to have the sync adapter sync immediately
+     * Helper method to have the sync adapter sync immediately. Requests made while a sync is
+     * about to run or running are served by that sync, see {@link SyncCoordinator}.
      *
      * @param context The context used to access the account service
      */
     public static void syncImmediately(Context context)
+    {
+        SyncCoordinator.getInstance(context)
+                .requestSync(Utility.getPreferredLocation(context), false, null);
+    }
+
+    /**
+     * Helper method to have the sync adapter refresh every stored location immediately
+     *
+     * @param context The context used to access the account service
+     */
+    public static void syncAllLocationsImmediately(Context context)
+    {
+        SyncCoordinator.getInstance(context)
+                .requestSync(Utility.getPreferredLocation(context), true, null);
+    }
+
+    /**
+     * Hands a sync request straight to the sync framework, only {@link SyncCoordinator} should
+     * call this.
+     */
+    static void requestSyncNow(Context context, boolean allLocations)
     {
         Bundle bundle = new Bundle();
         bundle.putBoolean(ContentResolver.SYNC_EXTRAS_EXPEDITED, true);
         bundle.putBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, true);
+        if (allLocations)
+            bundle.putBoolean(SYNC_EXTRAS_ALL_LOCATIONS, true);
         ContentResolver.requestSync(getSyncAccount(context),
                 context.getString(R.string.content_authority), bundle);
     }
@@ -238,73 +261,67 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
         Log.d(LOG_TAG, "Starting sync");
         String locationQuery = Utility.getPreferredLocation(getContext());
 
-        // These two need to be declared outside the try/catch
-        // so that they can be closed in the finally block.
-        HttpURLConnection urlConnection = null;
-        BufferedReader reader = null;
+        // a 304 is only good news if we still have the forecast it refers to
+        validatorStore.retainOnly(getCachedLocationSettings());
 
-        // Will contain the raw JSON response as a string.
-        String forecastJsonStr = null;
-
-        String format = "json";
-        String units = "metric";
-        int numDays = 14;
+        // periodic syncs keep every stored location fresh
+        boolean allLocations = extras != null && (extras.getBoolean(SYNC_EXTRAS_ALL_LOCATIONS, false)
+                || isPeriodicSync(extras));
+        SyncCoordinator coordinator = SyncCoordinator.getInstance(getContext());
+        coordinator.onSyncStarted(locationQuery, allLocations);
+        List<String> refreshedLocations = new ArrayList<>();
+        try
+        {
+            if (allLocations)
+                refreshedLocations = syncAllLocations(locationQuery);
+            else if (syncLocation(locationQuery))
+                refreshedLocations.add(locationQuery);
+            // stored or confirmed by a 304, either way the watch can be told it's current
+            if (refreshedLocations.contains(locationQuery))
+                WearablePublishQueue.getInstance(getContext()).recordForecastFetched();
+        }
+        finally
+        {
+            coordinator.onSyncFinished(refreshedLocations);
+        }
+        if (refreshedLocations.contains(locationQuery))
+            adaptiveScheduler.reschedule(getContext());
+    }
 
+    /**
+     * Refreshes a single location.
+     *
+     * @return whether the stored forecast of the location is current now
+     */
+    private boolean syncLocation(String locationQuery)
+    {
         try
         {
-            // Construct the URL for the OpenWeatherMap query
-            // Possible parameters are avaiable at OWM's forecast API page, at
-            // http://openweathermap.org/API#forecast
-            final String FORECAST_BASE_URL =
-                    "http://api.openweathermap.org/data/2.5/forecast/daily?";
-            final String QUERY_PARAM = "q";
-            final String FORMAT_PARAM = "mode";
-            final String UNITS_PARAM = "units";
-            final String DAYS_PARAM = "cnt";
-            final String APPID_PARAM = "APPID";
-
-            Uri builtUri = Uri.parse(FORECAST_BASE_URL).buildUpon()
-                    .appendQueryParameter(QUERY_PARAM, locationQuery)
-                    .appendQueryParameter(FORMAT_PARAM, format)
-                    .appendQueryParameter(UNITS_PARAM, units)
-                    .appendQueryParameter(DAYS_PARAM, Integer.toString(numDays))
-                    .appendQueryParameter(APPID_PARAM, BuildConfig.OPEN_WEATHER_MAP_API_KEY)
-                    .build();
-
-            URL url = new URL(builtUri.toString());
-
-            // Create the request to OpenWeatherMap, and open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-            urlConnection.setRequestMethod("GET");
-            urlConnection.connect();
-
-            // Read the input stream into a String
-            InputStream inputStream = urlConnection.getInputStream();
-            StringBuffer buffer = new StringBuffer();
-            if (inputStream == null)
+            long syncStart = SystemClock.elapsedRealtime();
+            ForecastResponse forecast = forecastFetcher.fetch(locationQuery);
+            if (forecast == null)
             {
-                // Nothing to do.
-                return;
+                // Stream was empty.  No point in parsing.
+                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
+                return false;
             }
-            reader = new BufferedReader(new InputStreamReader(inputStream));
-
-            String line;
-            while ((line = reader.readLine()) != null)
+            if (forecast.notModified)
             {
-                // Since it's JSON, adding a newline isn't necessary (it won't affect parsing)
-                // But it does make debugging a *lot* easier if you print out the completed
-                // buffer for debugging.
-                buffer.append(line + "\n");
+                // What we have is still current, no need to touch the database or anyone
+                // showing its content.
+                validatorStore.recordNotModified(locationQuery);
+                adaptiveScheduler.recordNotModified();
+                Log.d(LOG_TAG, "Sync Complete. Forecast not modified, " + validatorStore.getSavedBytes()
+                        + " bytes and " + validatorStore.getSavedSyncMillis() + "ms saved so far");
+                setLocationStatus(getContext(), LOCATION_STATUS_OK);
+                return true;
             }
-
-            if (buffer.length() == 0)
+            if (storeWeatherData(forecast, locationQuery))
             {
-                // Stream was empty.  No point in parsing.
-                setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                return;
+                validatorStore.recordFetched(locationQuery, forecast,
+                        SystemClock.elapsedRealtime() - syncStart);
+                return true;
             }
-            forecastJsonStr = buffer.toString();
-            getWeatherDataFromJson(forecastJsonStr, locationQuery);
         }
         catch (IOException e)
         {
@@ -319,216 +336,324 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
             e.printStackTrace();
             setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
         }
-        finally
+        return false;
+    }
+
+    /**
+     * Refreshes the preferred location along with every location stored in the location table.
+     * Fetches overlap on a bounded pool, and the results are written in batches of
+     * {@link #SYNC_BATCH_SIZE} locations, each batch in a single bulkInsert transaction.
+     *
+     * @return the location settings whose stored forecast is current now
+     */
+    private List<String> syncAllLocations(String preferredLocation)
+    {
+        List<String> refreshedLocations = new ArrayList<>();
+        List<String> locationSettings = getStoredLocationSettings();
+        locationSettings.remove(preferredLocation);
+        // the preferred location goes first, so its rows land in the very first batch
+        locationSettings.add(0, preferredLocation);
+
+        ForecastFetchPool pool = new ForecastFetchPool(forecastFetcher, SYNC_POOL_SIZE, SYNC_MAX_REQUESTS_PER_HOST);
+        WeatherRows batch = new WeatherRows(SYNC_BATCH_SIZE * 16);
+        // the fetches whose rows are in the batch, waiting for it to be written
+        List<ForecastFetchPool.Result> batchResults = new ArrayList<>(SYNC_BATCH_SIZE);
+        int inserted = 0;
+        try
         {
-            if (urlConnection != null)
-            {
-                urlConnection.disconnect();
-            }
-            if (reader != null)
+            List<Future<ForecastFetchPool.Result>> futures = pool.fetchAll(locationSettings);
+            for (int i = 0; i < futures.size(); i++)
             {
+                ForecastFetchPool.Result result;
                 try
                 {
-                    reader.close();
+                    result = futures.get(i).get();
+                }
+                catch (ExecutionException e)
+                {
+                    // fails just this location, like a fetch that reported its error
+                    result = new ForecastFetchPool.Result(locationSettings.get(i), null, e, 0);
                 }
-                catch (final IOException e)
+                boolean isPreferred = preferredLocation.equals(result.locationSetting);
+
+                int locationStatus = getLocationStatus(result);
+                if (isPreferred)
+                    setLocationStatus(getContext(), locationStatus);
+                if (locationStatus != LOCATION_STATUS_OK)
+                    continue;
+                refreshedLocations.add(result.locationSetting);
+                if (result.forecast.notModified)
                 {
-                    Log.e(LOG_TAG, "Error closing stream", e);
+                    validatorStore.recordNotModified(result.locationSetting);
+                    if (isPreferred)
+                        adaptiveScheduler.recordNotModified();
+                    continue;
                 }
+
+                addWeatherValues(result.forecast, result.locationSetting, isPreferred, batch);
+                batchResults.add(result);
+                if (batchResults.size() == SYNC_BATCH_SIZE)
+                    inserted += insertBatch(batch, batchResults);
             }
         }
-        return;
+        catch (InterruptedException e)
+        {
+            Log.e(LOG_TAG, "Sync of all locations interrupted", e);
+            Thread.currentThread().interrupt();
+            // nobody is waiting for the fetches still running
+            pool.shutdownNow();
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+        // whatever has been fetched is worth keeping, even if the pass was cut short
+        inserted += insertBatch(batch, batchResults);
+
+        if (inserted > 0)
+            onWeatherDataInserted();
+        Log.d(LOG_TAG, "Sync of " + locationSettings.size() + " locations complete. " + inserted + " rows changed");
+        return refreshedLocations;
     }
 
     /**
-     * Take the String representing the complete forecast in JSON Format and
-     * pull out the data we need to construct the Strings needed for the wireframes.
-     * <p/>
-     * Fortunately parsing is easy:  constructor takes the JSON string and converts it
-     * into an Object hierarchy for us.
+     * Writes a batch of forecasts, and only then remembers the validators of its locations.
+     * Validators of rows that never made it to the database would have every later sync skip
+     * them on a 304.
+     *
+     * @return the number of rows inserted or updated
      */
-    private void getWeatherDataFromJson(String forecastJsonStr,
-                                        String locationSetting)
-            throws JSONException
+    private int insertBatch(WeatherRows batch, List<ForecastFetchPool.Result> batchResults)
     {
+        int count = insertWeatherValues(batch);
+        for (ForecastFetchPool.Result result : batchResults)
+            validatorStore.recordFetched(result.locationSetting, result.forecast, result.fetchMillis);
+        batchResults.clear();
+        return count;
+    }
 
-        // Now we have a String representing the complete forecast in JSON Format.
-        // Fortunately parsing is easy:  constructor takes the JSON string and converts it
-        // into an Object hierarchy for us.
-
-        // These are the names of the JSON objects that need to be extracted.
-
-        // Location information
-        final String OWM_CITY = "city";
-        final String OWM_CITY_NAME = "name";
-        final String OWM_COORD = "coord";
-
-        // Location coordinate
-        final String OWM_LATITUDE = "lat";
-        final String OWM_LONGITUDE = "lon";
+    /**
+     * Periodic syncs come without any of the flags of syncs requested through ContentResolver
+     * and of those the framework starts after a local change.
+     */
+    private static boolean isPeriodicSync(Bundle extras)
+    {
+        return !extras.getBoolean(ContentResolver.SYNC_EXTRAS_MANUAL, false)
+                && !extras.getBoolean(ContentResolver.SYNC_EXTRAS_UPLOAD, false);
+    }
 
-        // Weather information.  Each day's forecast info is an element of the "list" array.
-        final String OWM_LIST = "list";
+    @LocationStatus
+    private static int getLocationStatus(ForecastFetchPool.Result result)
+    {
+        if (result.error instanceof JSONException)
+            return LOCATION_STATUS_SERVER_INVALID;
+        if (result.error != null || result.forecast == null)
+            return LOCATION_STATUS_SERVER_DOWN;
+        return getLocationStatus(result.forecast);
+    }
 
-        final String OWM_PRESSURE = "pressure";
-        final String OWM_HUMIDITY = "humidity";
-        final String OWM_WINDSPEED = "speed";
-        final String OWM_WIND_DIRECTION = "deg";
+    @LocationStatus
+    private static int getLocationStatus(ForecastResponse forecast)
+    {
+        if (forecast.notModified)
+            return LOCATION_STATUS_OK;
+        switch (forecast.messageCode)
+        {
+            case ForecastResponse.NO_MESSAGE_CODE:
+            case HttpURLConnection.HTTP_OK:
+                return LOCATION_STATUS_OK;
+            case HttpURLConnection.HTTP_NOT_FOUND:
+                return LOCATION_STATUS_INVALID;
+            default:
+                return LOCATION_STATUS_SERVER_DOWN;
+        }
+    }
 
-        // All temperatures are children of the "temp" object.
-        final String OWM_TEMPERATURE = "temp";
-        final String OWM_MAX = "max";
-        final String OWM_MIN = "min";
+    private List<String> getStoredLocationSettings()
+    {
+        List<String> locationSettings = new ArrayList<>();
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                null,
+                null,
+                null);
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+                locationSettings.add(cursor.getString(0));
+            cursor.close();
+        }
+        return locationSettings;
+    }
 
-        final String OWM_WEATHER = "weather";
-        final String OWM_DESCRIPTION = "main";
-        final String OWM_WEATHER_ID = "id";
+    /**
+     * Location settings which have forecast rows from today on.
+     */
+    private List<String> getCachedLocationSettings()
+    {
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
 
-        final String OWM_MESSAGE_CODE = "cod";
+        List<String> locationSettings = new ArrayList<>();
+        Cursor cursor = getContext().getContentResolver().query(
+                WeatherContract.LocationEntry.CONTENT_URI,
+                new String[]{WeatherContract.LocationEntry.COLUMN_LOCATION_SETTING},
+                WeatherContract.LocationEntry._ID + " IN (SELECT " +
+                        WeatherContract.WeatherEntry.COLUMN_LOC_KEY + " FROM " +
+                        WeatherContract.WeatherEntry.TABLE_NAME + " WHERE " +
+                        WeatherContract.WeatherEntry.COLUMN_DATE + " >= ?)",
+                new String[]{Long.toString(dayTime.setJulianDay(julianStartDay))},
+                null);
+        if (cursor != null)
+        {
+            while (cursor.moveToNext())
+                locationSettings.add(cursor.getString(0));
+            cursor.close();
+        }
+        return locationSettings;
+    }
 
-        try
+    /**
+     * Take the parsed forecast and store the days it contains for the given location setting.
+     *
+     * @return whether the forecast was valid and has been stored
+     */
+    private boolean storeWeatherData(ForecastResponse forecast, String locationSetting)
+    {
+        // do we have an error?
+        int locationStatus = getLocationStatus(forecast);
+        if (locationStatus != LOCATION_STATUS_OK)
         {
-            JSONObject forecastJson = new JSONObject(forecastJsonStr);
+            setLocationStatus(getContext(), locationStatus);
+            return false;
+        }
 
-            // do we have an error?
-            if (forecastJson.has(OWM_MESSAGE_CODE))
-            {
-                int errorCode = forecastJson.getInt(OWM_MESSAGE_CODE);
+        WeatherRows rows = new WeatherRows(forecast.dayCount);
+        addWeatherValues(forecast, locationSetting, true, rows);
+        // nothing to tell widgets and friends about if every row was already up to date
+        int changed = insertWeatherValues(rows);
+        if (changed > 0)
+            onWeatherDataInserted();
+        Log.d(LOG_TAG, "Sync Complete. " + changed + " of " + forecast.dayCount + " days changed");
+        setLocationStatus(getContext(), LOCATION_STATUS_OK);
+        return true;
+    }
 
-                switch (errorCode)
-                {
-                    case HttpURLConnection.HTTP_OK:
-                        break;
-                    case HttpURLConnection.HTTP_NOT_FOUND:
-                        setLocationStatus(getContext(), LOCATION_STATUS_INVALID);
-                        return;
-                    default:
-                        setLocationStatus(getContext(), LOCATION_STATUS_SERVER_DOWN);
-                        return;
-                }
-            }
+    /**
+     * Turns every day of the forecast into a row of the weather table.
+     *
+     * @param isPreferred whether this is the user's location, in which case the forecast is
+     *                    also pushed to the wearable
+     */
+    private void addWeatherValues(ForecastResponse forecast, String locationSetting,
+                                  boolean isPreferred, WeatherRows rows)
+    {
+        long locationId = addLocation(locationSetting, forecast.cityName,
+                forecast.cityLatitude, forecast.cityLongitude);
 
-            JSONArray weatherArray = forecastJson.getJSONArray(OWM_LIST);
+        // OWM returns daily forecasts based upon the local time of the city that is being
+        // asked for, which means that we need to know the GMT offset to translate this data
+        // properly.
 
-            JSONObject cityJson = forecastJson.getJSONObject(OWM_CITY);
-            String cityName = cityJson.getString(OWM_CITY_NAME);
+        // Since this data is also sent in-order and the first day is always the
+        // current day, we're going to take advantage of that to get a nice
+        // normalized UTC date for all of our weather.
 
-            JSONObject cityCoord = cityJson.getJSONObject(OWM_COORD);
-            double cityLatitude = cityCoord.getDouble(OWM_LATITUDE);
-            double cityLongitude = cityCoord.getDouble(OWM_LONGITUDE);
+        Time dayTime = new Time();
+        dayTime.setToNow();
 
-            long locationId = addLocation(locationSetting, cityName, cityLatitude, cityLongitude);
+        // we start at the day returned by local time. Otherwise this is a mess.
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
 
-            // Insert the new weather information into the database
-            Vector<ContentValues> cVVector = new Vector<ContentValues>(weatherArray.length());
+        // now we work exclusively in UTC
+        dayTime = new Time();
 
-            // OWM returns daily forecasts based upon the local time of the city that is being
-            // asked for, which means that we need to know the GMT offset to translate this data
-            // properly.
+        int first = rows.size();
+        // the watch gets the whole window, so it can move on to the next day by itself
+        PackedForecast wearableDays = null;
+        if (isPreferred)
+        {
+            wearableDays = new PackedForecast(forecast.dayCount);
+            wearableDays.setStartDay(julianStartDay);
+        }
+        for (int i = 0; i < forecast.dayCount; i++)
+        {
+            // Cheating to convert this to UTC time, which is what we want anyhow
+            long dateTime = dayTime.setJulianDay(julianStartDay + i);
 
-            // Since this data is also sent in-order and the first day is always the
-            // current day, we're going to take advantage of that to get a nice
-            // normalized UTC date for all of our weather.
+            double high = forecast.high[i];
+            double low = forecast.low[i];
+            double windSpeed = forecast.windSpeed[i];
+            double windDirection = forecast.windDirection[i];
+            int weatherId = forecast.weatherId[i];
 
-            Time dayTime = new Time();
-            dayTime.setToNow();
+            rows.add(locationId, dateTime, forecast.description[i], weatherId, low, high,
+                    forecast.humidity[i], forecast.pressure[i], windSpeed, windDirection);
 
-            // we start at the day returned by local time. Otherwise this is a mess.
-            int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+            if (wearableDays != null)
+                wearableDays.add(weatherId, (int) Math.round(high), (int) Math.round(low),
+                        (int) Math.round(windDirection), (int) Math.round(windSpeed));
+        }
 
-            // now we work exclusively in UTC
-            dayTime = new Time();
+        if (isPreferred)
+        {
+            adaptiveScheduler.recordForecast(getContext(), locationId, rows, first);
+            if (wearableDays.size() > 0)
+                notifyWearable(ForecastDataSet.fromForecastDays(wearableDays));
+        }
+    }
 
-            for (int i = 0; i < weatherArray.length(); i++)
+    /**
+     * Writes the collected rows in one transaction and clears them. From Honeycomb on the rows
+     * go to the provider as primitive arrays and are bound into its compiled statements,
+     * older devices take the ContentValues bulkInsert.
+     *
+     * @return the number of rows the provider actually inserted or changed
+     */
+    private int insertWeatherValues(WeatherRows rows)
+    {
+        int count = 0;
+        if (rows.size() > 0)
+        {
+            ContentResolver resolver = getContext().getContentResolver();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
             {
-                // These are the values that will be collected.
-                long dateTime;
-                double pressure;
-                int humidity;
-                double windSpeed;
-                double windDirection;
-
-                double high;
-                double low;
-
-                String description;
-                int weatherId;
-
-                // Get the JSON object representing the day
-                JSONObject dayForecast = weatherArray.getJSONObject(i);
-
-                // Cheating to convert this to UTC time, which is what we want anyhow
-                dateTime = dayTime.setJulianDay(julianStartDay + i);
-
-                pressure = dayForecast.getDouble(OWM_PRESSURE);
-                humidity = dayForecast.getInt(OWM_HUMIDITY);
-                windSpeed = dayForecast.getDouble(OWM_WINDSPEED);
-                windDirection = dayForecast.getDouble(OWM_WIND_DIRECTION);
-
-                // Description is in a child array called "weather", which is 1 element long.
-                // That element also contains a weather code.
-                JSONObject weatherObject =
-                        dayForecast.getJSONArray(OWM_WEATHER).getJSONObject(0);
-                description = weatherObject.getString(OWM_DESCRIPTION);
-                weatherId = weatherObject.getInt(OWM_WEATHER_ID);
-
-                // Temperatures are in a child object called "temp".  Try not to name variables
-                // "temp" when working with temperature.  It confuses everybody.
-                JSONObject temperatureObject = dayForecast.getJSONObject(OWM_TEMPERATURE);
-                high = temperatureObject.getDouble(OWM_MAX);
-                low = temperatureObject.getDouble(OWM_MIN);
-
-                ContentValues weatherValues = new ContentValues();
-
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_LOC_KEY, locationId);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DATE, dateTime);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_HUMIDITY, humidity);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_PRESSURE, pressure);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WIND_SPEED, windSpeed);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_DEGREES, windDirection);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MAX_TEMP, high);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_MIN_TEMP, low);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_SHORT_DESC, description);
-                weatherValues.put(WeatherContract.WeatherEntry.COLUMN_WEATHER_ID, weatherId);
-
-                cVVector.add(weatherValues);
-
-                if(i == 0)
-                {
-                    ForecastDataSet dataItem = new ForecastDataSet(weatherId, (int) Math.round(high), (int) Math.round(low),
-                            (int) Math.round(windDirection), (int) Math.round(windSpeed));
-                    //googleApiClient.connect();
-                    notifyWearable(dataItem);
-                }
+                Bundle stats = resolver.call(WeatherContract.WeatherEntry.CONTENT_URI,
+                        WeatherProvider.METHOD_BULK_INSERT_ROWS, null, rows.toBundle());
+                if (stats != null)
+                    count = stats.getInt(WeatherProvider.KEY_INSERTED) + stats.getInt(WeatherProvider.KEY_UPDATED);
             }
-
-            int inserted = 0;
-            // add to database
-            if (cVVector.size() > 0)
+            else
             {
-                ContentValues[] cvArray = new ContentValues[cVVector.size()];
-                cVVector.toArray(cvArray);
-                getContext().getContentResolver().bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, cvArray);
-
-                // delete old data so we don't build up an endless history
-                getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
-                        WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
-                        new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
-
-                updateWidgets();
-                updateMuzei();
-                notifyWeather();
+                count = resolver.bulkInsert(WeatherContract.WeatherEntry.CONTENT_URI, rows.toContentValues());
             }
-            Log.d(LOG_TAG, "Sync Complete. " + cVVector.size() + " Inserted");
-            setLocationStatus(getContext(), LOCATION_STATUS_OK);
-
-        }
-        catch (JSONException e)
-        {
-            Log.e(LOG_TAG, e.getMessage(), e);
-            e.printStackTrace();
-            setLocationStatus(getContext(), LOCATION_STATUS_SERVER_INVALID);
+            rows.clear();
         }
+        return count;
+    }
+
+    /**
+     * Drops the history we no longer need and lets everyone showing the weather know about the
+     * new data.
+     */
+    private void onWeatherDataInserted()
+    {
+        Time dayTime = new Time();
+        dayTime.setToNow();
+        int julianStartDay = Time.getJulianDay(System.currentTimeMillis(), dayTime.gmtoff);
+        dayTime = new Time();
+
+        // delete old data so we don't build up an endless history
+        getContext().getContentResolver().delete(WeatherContract.WeatherEntry.CONTENT_URI,
+                WeatherContract.WeatherEntry.COLUMN_DATE + " <= ?",
+                new String[]{Long.toString(dayTime.setJulianDay(julianStartDay - 1))});
+
+        updateWidgets();
+        updateMuzei();
+        notifyWeather();
     }
 
     private void updateWidgets()
@@ -722,59 +847,8 @@ public class SunshineSyncAdapter extends AbstractThreadedSyncAdapter
 
     private void notifyWearable(@lombok.NonNull final ForecastDataSet dataItem)
     {
-        new AsyncTask<Void, Void, Void>()
-        {
-            @Override
-            protected Void doInBackground(Void... params)
-            {
-                ConnectionResult result = googleApiClient.blockingConnect(30, TimeUnit.SECONDS);
-                if (!result.isSuccess())
-                {
-                    Log.d(TAG, "Blocking connection failed");
-                    return null;
-                }
-
-                PutDataMapRequest putDataMapReq = PutDataMapRequest.create(SUNSHINE_CONFIG);
-
-                putDataMapReq.getDataMap().putInt(MAX_TEMP_KEY, dataItem.maxTemp);
-                putDataMapReq.getDataMap().putInt(MIN_TEMP_KEY, dataItem.minTemp);
-                putDataMapReq.getDataMap().putInt(WEATHER_TYPE_KEY, dataItem.weatherType);
-                putDataMapReq.getDataMap().putInt(WIND_ANGLE_KEY, dataItem.windAngle);
-                putDataMapReq.getDataMap().putInt(WIND_SPEED_KEY, dataItem.windSpeed);
-                putDataMapReq.getDataMap().putBoolean(IS_METRIC_KEY, Utility.isMetric(getContext()));
-
-
-                final PutDataRequest putDataReq = putDataMapReq.asPutDataRequest();
-                boolean success = Wearable.DataApi.putDataItem(googleApiClient, putDataReq).await().getStatus().isSuccess();
-                Log.d(TAG, "Data item success => " + success);
-                return null;
-            }
-        }.execute();
-    }
-
-    @Override
-    public void onConnected(@Nullable Bundle bundle)
-    {
-        Log.d(TAG, "connected GoogleAPI");
-    }
-
-    @Override
-    public void onConnectionSuspended(int i)
-    {
-        Log.d(TAG, "connection suspended - GoogleApi");
-        //This check is just for safekeeping
-        if (googleApiClient != null && googleApiClient.isConnected())
-            googleApiClient.disconnect();
-    }
-
-    @Override
-    public void onConnectionFailed(@NonNull ConnectionResult connectionResult)
-    {
-        Log.d(TAG, "connection failed - GoogleApi");
-
-        //This check is just for safekeeping
-        if (googleApiClient != null && googleApiClient.isConnected())
-            googleApiClient.disconnect();
+        // returns once the forecast is queued, the sync doesn't wait on the wearable
+        WearablePublishQueue.getInstance(getContext()).publish(dataItem);
     }
 
     @Retention(RetentionPolicy.SOURCE)
@@ -0,0 +1,288 @@
+package com.example.android.sunshine.app.sync;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.android.sunshine.app.R;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sits between everyone asking for a sync and the sync framework, so a burst of requests ends
+ * up as a single network round trip.
+ * <p/>
+ * Requests made within a short window are merged into one sync request. Requests made while a
+ * covering sync is already requested or running are attached to it instead, and a location
+ * refreshed less than a minimum interval ago isn't synced again for a single location request.
+ * Callers can pass a {@link SyncListener} to hear back once the sync that served them is done.
+ */
+public class SyncCoordinator
+{
+    private static final String TAG = SyncCoordinator.class.getSimpleName();
+
+    private static final String PREFS_NAME = "sync_coordinator";
+    private static final String REQUESTED_COUNT_KEY = "requested_count";
+    private static final String COALESCED_COUNT_KEY = "coalesced_count";
+    private static final String THROTTLED_COUNT_KEY = "throttled_count";
+    private static final String EXECUTED_COUNT_KEY = "executed_count";
+
+    // A requested sync that hasn't started by then was most likely dropped by the framework, e.g.
+    // because there is no network, so the next request asks again rather than waiting on it
+    private static final long REQUEST_TIMEOUT_MILLIS = 60 * 1000;
+
+    private static SyncCoordinator sInstance;
+
+    public interface SyncListener
+    {
+        /**
+         * Called on the main thread once the sync serving the request is done, or right away if
+         * the location has been refreshed recently enough.
+         *
+         * @param refreshed whether the requested location has been refreshed, false if the sync
+         *                  failed for it
+         */
+        void onSyncFinished(boolean refreshed);
+    }
+
+    private final Context context;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final SharedPreferences prefs;
+    private final long windowMillis;
+    private final long minIntervalMillis;
+
+    // Collecting requests until the window closes
+    private Request pending;
+    // Handed to the sync framework, waiting for onPerformSync
+    private Request requested;
+    // Inside onPerformSync
+    private Request running;
+    // Last successful refresh of each location setting, elapsed realtime
+    private final Map<String, Long> lastSyncMillis = new HashMap<>();
+
+    private final Runnable flushPending = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            flush();
+        }
+    };
+
+    public static synchronized SyncCoordinator getInstance(Context context)
+    {
+        if (sInstance == null)
+            sInstance = new SyncCoordinator(context.getApplicationContext());
+        return sInstance;
+    }
+
+    private SyncCoordinator(Context context)
+    {
+        this.context = context;
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        windowMillis = context.getResources().getInteger(R.integer.sync_coalesce_window_millis);
+        minIntervalMillis = context.getResources().getInteger(R.integer.sync_min_interval_seconds) * 1000L;
+    }
+
+    /**
+     * Asks for the location setting to be refreshed.
+     *
+     * @param allLocations whether every stored location should be refreshed along with it
+     * @param listener     told when the sync is done, may be null
+     */
+    public synchronized void requestSync(String locationSetting, boolean allLocations, SyncListener listener)
+    {
+        increment(REQUESTED_COUNT_KEY);
+        long now = SystemClock.elapsedRealtime();
+
+        Request covering = null;
+        if (running != null && running.covers(locationSetting, allLocations))
+            covering = running;
+        else if (requested != null && now - requested.requestedAt < REQUEST_TIMEOUT_MILLIS
+                && requested.covers(locationSetting, allLocations))
+            covering = requested;
+        else if (pending != null)
+        {
+            pending.merge(locationSetting, allLocations);
+            covering = pending;
+        }
+        if (covering != null)
+        {
+            covering.attach(locationSetting, listener);
+            increment(COALESCED_COUNT_KEY);
+            Log.d(TAG, "Sync request for " + locationSetting + " coalesced");
+            return;
+        }
+
+        Long lastSync = lastSyncMillis.get(locationSetting);
+        if (!allLocations && lastSync != null && now - lastSync < minIntervalMillis)
+        {
+            increment(THROTTLED_COUNT_KEY);
+            Log.d(TAG, locationSetting + " was refreshed " + (now - lastSync) + "ms ago, not syncing it again");
+            if (listener != null)
+                post(listener, true);
+            return;
+        }
+
+        pending = new Request(locationSetting, allLocations);
+        pending.attach(locationSetting, listener);
+        handler.postDelayed(flushPending, windowMillis);
+    }
+
+    private synchronized void flush()
+    {
+        if (pending == null)
+            return;
+        if (requested != null)
+        {
+            // the previous request never made it to onPerformSync, its callers ride along
+            pending.absorb(requested);
+        }
+        requested = pending;
+        requested.requestedAt = SystemClock.elapsedRealtime();
+        pending = null;
+        // a single location sync only refreshes the preferred location
+        if (requested.locations.size() > 1)
+            requested.allLocations = true;
+        SunshineSyncAdapter.requestSyncNow(context, requested.allLocations);
+    }
+
+    /**
+     * Called by the sync adapter as it starts syncing.
+     */
+    synchronized void onSyncStarted(String preferredLocation, boolean allLocations)
+    {
+        increment(EXECUTED_COUNT_KEY);
+        Request started = new Request(preferredLocation, allLocations);
+        if (requested != null && started.covers(requested))
+        {
+            started.absorb(requested);
+            requested = null;
+        }
+        running = started;
+    }
+
+    /**
+     * Called by the sync adapter once it's done.
+     *
+     * @param refreshedLocations location settings whose forecast is now current
+     */
+    synchronized void onSyncFinished(Collection<String> refreshedLocations)
+    {
+        long now = SystemClock.elapsedRealtime();
+        for (String locationSetting : refreshedLocations)
+            lastSyncMillis.put(locationSetting, now);
+
+        if (running != null)
+        {
+            for (Map.Entry<SyncListener, String> entry : running.listeners.entrySet())
+                post(entry.getKey(), refreshedLocations.contains(entry.getValue()));
+            running = null;
+        }
+        Log.d(TAG, "Syncs executed: " + getExecutedCount() + ", requests coalesced: " + getCoalescedCount()
+                + ", throttled: " + getThrottledCount() + " of " + getRequestedCount());
+    }
+
+    private void post(final SyncListener listener, final boolean refreshed)
+    {
+        handler.post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                listener.onSyncFinished(refreshed);
+            }
+        });
+    }
+
+    private void increment(String key)
+    {
+        prefs.edit().putLong(key, prefs.getLong(key, 0) + 1).apply();
+    }
+
+    public long getRequestedCount()
+    {
+        return prefs.getLong(REQUESTED_COUNT_KEY, 0);
+    }
+
+    /**
+     * Requests served by a sync that was already pending, requested or running.
+     */
+    public long getCoalescedCount()
+    {
+        return prefs.getLong(COALESCED_COUNT_KEY, 0);
+    }
+
+    /**
+     * Requests dropped because the location had been refreshed within the minimum interval.
+     */
+    public long getThrottledCount()
+    {
+        return prefs.getLong(THROTTLED_COUNT_KEY, 0);
+    }
+
+    /**
+     * Syncs that actually ran, periodic ones included.
+     */
+    public long getExecutedCount()
+    {
+        return prefs.getLong(EXECUTED_COUNT_KEY, 0);
+    }
+
+    private static class Request
+    {
+        boolean allLocations;
+        final Set<String> locations = new HashSet<>();
+        // listener -> location setting it asked for
+        final Map<SyncListener, String> listeners = new HashMap<>();
+        long requestedAt;
+
+        Request(String locationSetting, boolean allLocations)
+        {
+            this.allLocations = allLocations;
+            if (locationSetting != null)
+                locations.add(locationSetting);
+        }
+
+        boolean covers(String locationSetting, boolean allLocations)
+        {
+            if (this.allLocations)
+                return true;
+            return !allLocations && locations.contains(locationSetting);
+        }
+
+        boolean covers(Request other)
+        {
+            if (allLocations)
+                return true;
+            return !other.allLocations && locations.containsAll(other.locations);
+        }
+
+        void merge(String locationSetting, boolean allLocations)
+        {
+            this.allLocations |= allLocations;
+            if (locationSetting != null)
+                locations.add(locationSetting);
+        }
+
+        void attach(String locationSetting, SyncListener listener)
+        {
+            if (listener != null)
+                listeners.put(listener, locationSetting);
+        }
+
+        void absorb(Request other)
+        {
+            allLocations |= other.allLocations;
+            locations.addAll(other.locations);
+            listeners.putAll(other.listeners);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.android.sunshine.shared;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The watch asking the phone for the forecast, as sent in the message payload.
+ * <p/>
+ * A request names the version of the data the watch shows, so the phone only answers when it
+ * has something newer, and how old the phone's own forecast may be before it should be synced
+ * first. The id tells repeated deliveries of one request apart from new ones.
+ */
+public final class DataRequest
+{
+    public static final int VERSION = 1;
+
+    // version byte, id, data version and maximum age
+    private static final int ENCODED_LENGTH = 1 + 4 + 8 + 8;
+
+    public final int requestId;
+    /**
+     * Version of the data the watch has, 0 if it has none
+     */
+    public final long dataVersion;
+    /**
+     * How old the phone's forecast may be, in milliseconds, before it's not worth sending
+     */
+    public final long maxAgeMillis;
+
+    public DataRequest(int requestId, long dataVersion, long maxAgeMillis)
+    {
+        this.requestId = requestId;
+        this.dataVersion = dataVersion;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    public byte[] encode()
+    {
+        return ByteBuffer.allocate(ENCODED_LENGTH)
+                .put((byte) VERSION)
+                .putInt(requestId)
+                .putLong(dataVersion)
+                .putLong(maxAgeMillis)
+                .array();
+    }
+
+    /**
+     * @return null if the payload isn't a request of a version we know, like the empty payload
+     * older watches send
+     */
+    public static DataRequest decode(byte[] payload)
+    {
+        if (payload == null || payload.length < ENCODED_LENGTH || payload[0] != VERSION)
+            return null;
+        try
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(payload, 1, ENCODED_LENGTH - 1);
+            return new DataRequest(buffer.getInt(), buffer.getLong(), buffer.getLong());
+        }
+        catch (BufferUnderflowException e)
+        {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "DataRequest{" + requestId + ", version " + dataVersion + ", max age " + maxAgeMillis + "ms}";
+    }
+}
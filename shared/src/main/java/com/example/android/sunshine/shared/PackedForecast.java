@@ -0,0 +1,248 @@
+package com.example.android.sunshine.shared;
+
+import java.util.Arrays;
+
+/**
+ * The forecast of several days as the phone sends it to the watch: one column per field, so the
+ * watch can keep a single instance around and decode every update into it without creating
+ * objects.
+ * <p/>
+ * The encoded form starts with a version byte, the Julian day of the first day and the number
+ * of days, followed by one record per day. Records are varints: the weather id, the high as the
+ * difference to the previous day's high, the low as the difference to the same day's high, the
+ * wind direction in steps of two degrees and the wind speed. Temperatures barely move from one
+ * day to the next, so most of them take a single byte.
+ */
+public class PackedForecast
+{
+    public static final int VERSION = 1;
+
+    // version, start day and day count, the varints taking 5 bytes at most
+    private static final int MAX_HEADER_BYTES = 1 + 5 + 5;
+    // weather id, high delta, low delta and wind speed as varints, wind direction as a byte
+    private static final int MAX_RECORD_BYTES = 5 + 5 + 5 + 1 + 5;
+    private static final int WIND_ANGLE_STEP = 2;
+
+    private int startDay;
+    private int size;
+    private int[] weatherIds;
+    private int[] maxTemps;
+    private int[] minTemps;
+    private int[] windAngles;
+    private int[] windSpeeds;
+
+    // where decode is at, kept here so reading a varint doesn't need an object to return two values
+    private int readPosition;
+
+    public PackedForecast(int capacity)
+    {
+        weatherIds = new int[capacity];
+        maxTemps = new int[capacity];
+        minTemps = new int[capacity];
+        windAngles = new int[capacity];
+        windSpeeds = new int[capacity];
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    /**
+     * @param startDay Julian day of the first day, as {@code Time.getJulianDay} has it
+     */
+    public void setStartDay(int startDay)
+    {
+        this.startDay = startDay;
+    }
+
+    public int getStartDay()
+    {
+        return startDay;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Appends the next day. Temperatures and wind speed are in the units the phone stores them
+     * in, the wind direction in degrees.
+     */
+    public void add(int weatherId, int maxTemp, int minTemp, int windAngle, int windSpeed)
+    {
+        ensureCapacity(size + 1);
+        weatherIds[size] = weatherId;
+        maxTemps[size] = maxTemp;
+        minTemps[size] = minTemp;
+        windAngles[size] = normalizeWindAngle(windAngle);
+        windSpeeds[size] = Math.max(0, windSpeed);
+        size++;
+    }
+
+    /**
+     * @return the index of the given Julian day, -1 if it isn't part of the forecast
+     */
+    public int indexOfDay(int julianDay)
+    {
+        int index = julianDay - startDay;
+        return index >= 0 && index < size ? index : -1;
+    }
+
+    public int getWeatherId(int index)
+    {
+        return weatherIds[index];
+    }
+
+    public int getMaxTemp(int index)
+    {
+        return maxTemps[index];
+    }
+
+    public int getMinTemp(int index)
+    {
+        return minTemps[index];
+    }
+
+    /**
+     * The wind direction in degrees, rounded to the two degrees it's sent with.
+     */
+    public int getWindAngle(int index)
+    {
+        return windAngles[index];
+    }
+
+    public int getWindSpeed(int index)
+    {
+        return windSpeeds[index];
+    }
+
+    public byte[] encode()
+    {
+        byte[] buffer = new byte[MAX_HEADER_BYTES + size * MAX_RECORD_BYTES];
+        int position = 0;
+        buffer[position++] = VERSION;
+        position = writeVarint(buffer, position, zigzag(startDay));
+        position = writeVarint(buffer, position, size);
+        int previousMax = 0;
+        for (int i = 0; i < size; i++)
+        {
+            position = writeVarint(buffer, position, weatherIds[i]);
+            position = writeVarint(buffer, position, zigzag(maxTemps[i] - previousMax));
+            position = writeVarint(buffer, position, zigzag(maxTemps[i] - minTemps[i]));
+            buffer[position++] = (byte) (windAngles[i] / WIND_ANGLE_STEP);
+            position = writeVarint(buffer, position, windSpeeds[i]);
+            previousMax = maxTemps[i];
+        }
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * Replaces the contents with the encoded forecast. Doesn't allocate unless the forecast has
+     * more days than any decoded before.
+     *
+     * @return false if the payload is of a version we don't know or is cut short, in which case
+     * the forecast is left empty
+     */
+    public boolean decode(byte[] payload)
+    {
+        size = 0;
+        if (payload == null || payload.length == 0 || payload[0] != VERSION)
+            return false;
+
+        readPosition = 1;
+        int start = unzigzag(readVarint(payload));
+        int count = readVarint(payload);
+        // every record takes a few bytes, a larger count can only come from a corrupt payload
+        if (readPosition < 0 || count < 0 || count > payload.length)
+            return false;
+        ensureCapacity(count);
+
+        int previousMax = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int weatherId = readVarint(payload);
+            int maxTemp = previousMax + unzigzag(readVarint(payload));
+            int minTemp = maxTemp - unzigzag(readVarint(payload));
+            if (readPosition < 0 || readPosition >= payload.length)
+                return false;
+            int windAngle = (payload[readPosition++] & 0xff) * WIND_ANGLE_STEP;
+            int windSpeed = readVarint(payload);
+            if (readPosition < 0)
+                return false;
+
+            weatherIds[i] = weatherId;
+            maxTemps[i] = maxTemp;
+            minTemps[i] = minTemp;
+            windAngles[i] = windAngle;
+            windSpeeds[i] = windSpeed;
+            previousMax = maxTemp;
+        }
+        startDay = start;
+        size = count;
+        return true;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity <= weatherIds.length)
+            return;
+        int newCapacity = Math.max(capacity, weatherIds.length * 2);
+        weatherIds = Arrays.copyOf(weatherIds, newCapacity);
+        maxTemps = Arrays.copyOf(maxTemps, newCapacity);
+        minTemps = Arrays.copyOf(minTemps, newCapacity);
+        windAngles = Arrays.copyOf(windAngles, newCapacity);
+        windSpeeds = Arrays.copyOf(windSpeeds, newCapacity);
+    }
+
+    private static int normalizeWindAngle(int windAngle)
+    {
+        windAngle %= 360;
+        if (windAngle < 0)
+            windAngle += 360;
+        // rounded to the nearest step, 359 ends up as 0 rather than 360
+        return (windAngle + WIND_ANGLE_STEP / 2) / WIND_ANGLE_STEP * WIND_ANGLE_STEP % 360;
+    }
+
+    private static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] buffer, int position, int value)
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            buffer[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Reads the varint at {@link #readPosition} and moves past it. Running out of bytes sets the
+     * position to -1, which every later read keeps.
+     */
+    private int readVarint(byte[] payload)
+    {
+        int value = 0;
+        for (int shift = 0; shift < 35 && readPosition >= 0; shift += 7)
+        {
+            if (readPosition >= payload.length)
+                break;
+            byte b = payload[readPosition++];
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        readPosition = -1;
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.android.sunshine.shared;
+
+/**
+ * What the phone and the watch show for an OpenWeatherMap condition id, looked up in tables
+ * indexed by the id instead of walking a chain of range checks.
+ * <p/>
+ * Conditions are grouped into kinds, one per icon: the app picks its icon and art resources by
+ * kind and the watch uses the kind as its weather type. The tables are filled once, when the
+ * class is loaded, from the same ranges the range checks used; lookups don't allocate.
+ * <p/>
+ * Based on weather code data found at:
+ * http://bugs.openweathermap.org/projects/api/wiki/Weather_Condition_Codes
+ */
+public final class WeatherConditions
+{
+    /**
+     * Condition ids are below this, anything at or above it is unknown
+     */
+    public static final int ID_COUNT = 1000;
+
+    public static final int KIND_UNKNOWN = 0;
+    public static final int KIND_STORM = 1;
+    public static final int KIND_LIGHT_RAIN = 2;
+    public static final int KIND_RAIN = 3;
+    public static final int KIND_SNOW = 4;
+    public static final int KIND_FOG = 5;
+    public static final int KIND_CLEAR = 6;
+    public static final int KIND_LIGHT_CLOUDS = 7;
+    public static final int KIND_CLOUDS = 8;
+    public static final int KIND_COUNT = 9;
+
+    // Indexed by kind, the names art packs use for their images
+    private static final String[] ART_NAMES = {
+            null, "storm", "light_rain", "rain", "snow", "fog", "clear", "light_clouds", "clouds"
+    };
+
+    private static final String THUNDERSTORM_IMAGE_URL =
+            "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
+    private static final String RAISED_DUST_IMAGE_URL =
+            "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+    // Indexed by kind
+    private static final String[] IMAGE_URLS = {
+            null,
+            THUNDERSTORM_IMAGE_URL,
+            "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg",
+            "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg"
+    };
+    // Tornadoes share the storm icon but not its image
+    private static final int TORNADO = 781;
+
+    private static final byte[] KINDS = new byte[ID_COUNT];
+
+    static
+    {
+        fill(200, 232, KIND_STORM);
+        fill(300, 321, KIND_LIGHT_RAIN);
+        fill(500, 504, KIND_RAIN);
+        fill(511, 511, KIND_SNOW);
+        fill(520, 531, KIND_RAIN);
+        fill(600, 622, KIND_SNOW);
+        fill(701, 761, KIND_FOG);
+        fill(TORNADO, TORNADO, KIND_STORM);
+        fill(800, 800, KIND_CLEAR);
+        fill(801, 801, KIND_LIGHT_CLOUDS);
+        fill(802, 804, KIND_CLOUDS);
+    }
+
+    private WeatherConditions()
+    {
+    }
+
+    private static void fill(int firstId, int lastId, int kind)
+    {
+        for (int id = firstId; id <= lastId; id++)
+            KINDS[id] = (byte) kind;
+    }
+
+    /**
+     * @return one of the {@code KIND_} constants, {@link #KIND_UNKNOWN} for ids without an icon
+     */
+    public static int getKind(int weatherId)
+    {
+        if (weatherId < 0 || weatherId >= ID_COUNT)
+            return KIND_UNKNOWN;
+        return KINDS[weatherId];
+    }
+
+    /**
+     * @return the name art packs use for the condition's image, null for unknown ones
+     */
+    public static String getArtName(int weatherId)
+    {
+        return ART_NAMES[getKind(weatherId)];
+    }
+
+    /**
+     * @return a URL to a photo of the condition, null for unknown ones
+     */
+    public static String getImageUrl(int weatherId)
+    {
+        if (weatherId == TORNADO)
+            return RAISED_DUST_IMAGE_URL;
+        return IMAGE_URLS[getKind(weatherId)];
+    }
+}
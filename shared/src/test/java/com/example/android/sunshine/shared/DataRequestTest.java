@@ -0,0 +1,42 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DataRequestTest
+{
+    @Test
+    public void decodesWhatWasEncoded()
+    {
+        DataRequest request = new DataRequest(-17, 1461500000000L, 4 * 60 * 60 * 1000L);
+        DataRequest decoded = DataRequest.decode(request.encode());
+
+        assertNotNull(decoded);
+        assertEquals(request.requestId, decoded.requestId);
+        assertEquals(request.dataVersion, decoded.dataVersion);
+        assertEquals(request.maxAgeMillis, decoded.maxAgeMillis);
+    }
+
+    @Test
+    public void rejectsLegacyUnknownAndTruncatedPayloads()
+    {
+        assertNull(DataRequest.decode(null));
+        // what watches sent before requests had a payload
+        assertNull(DataRequest.decode(new byte[0]));
+
+        byte[] payload = new DataRequest(1, 2, 3).encode();
+        byte[] unknownVersion = payload.clone();
+        unknownVersion[0] = DataRequest.VERSION + 1;
+        assertNull(DataRequest.decode(unknownVersion));
+
+        for (int length = 1; length < payload.length; length++)
+        {
+            byte[] truncated = new byte[length];
+            System.arraycopy(payload, 0, truncated, 0, length);
+            assertNull("Accepted a payload cut to " + length + " bytes", DataRequest.decode(truncated));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PackedForecastTest
+{
+    private static final int DAYS = 14;
+    private static final int START_DAY = 2457504;
+    // five ints a day, what the DataMap of a single day costs before its key strings
+    private static final int LOOSE_INTS_BYTES_PER_DAY = 5 * 4;
+    // a typical day fits in 6 bytes: a 2 byte weather id and a byte for everything else
+    private static final int MAX_PAYLOAD_BYTES = 6 + DAYS * 6;
+    private static final int DECODE_ITERATIONS = 100000;
+    private static final long MAX_DECODE_NANOS = 20000;
+
+    @Test
+    public void decodesWhatWasEncoded()
+    {
+        PackedForecast forecast = createForecast(DAYS);
+        PackedForecast decoded = new PackedForecast(1);
+        assertTrue(decoded.decode(forecast.encode()));
+
+        assertEquals(START_DAY, decoded.getStartDay());
+        assertEquals(DAYS, decoded.size());
+        for (int i = 0; i < DAYS; i++)
+        {
+            assertEquals(forecast.getWeatherId(i), decoded.getWeatherId(i));
+            assertEquals(forecast.getMaxTemp(i), decoded.getMaxTemp(i));
+            assertEquals(forecast.getMinTemp(i), decoded.getMinTemp(i));
+            assertEquals(forecast.getWindAngle(i), decoded.getWindAngle(i));
+            assertEquals(forecast.getWindSpeed(i), decoded.getWindSpeed(i));
+        }
+    }
+
+    @Test
+    public void keepsExtremeValues()
+    {
+        PackedForecast forecast = new PackedForecast(3);
+        forecast.setStartDay(START_DAY);
+        forecast.add(962, 60, -90, 359, 400);
+        forecast.add(200, -90, -95, -45, 0);
+        forecast.add(800, Integer.MAX_VALUE / 4, Integer.MIN_VALUE / 4, 720, -3);
+
+        PackedForecast decoded = new PackedForecast(3);
+        assertTrue(decoded.decode(forecast.encode()));
+        assertEquals(-90, decoded.getMinTemp(0));
+        assertEquals(0, decoded.getWindAngle(0));
+        assertEquals(-90, decoded.getMaxTemp(1));
+        assertEquals(316, decoded.getWindAngle(1));
+        assertEquals(Integer.MAX_VALUE / 4, decoded.getMaxTemp(2));
+        assertEquals(Integer.MIN_VALUE / 4, decoded.getMinTemp(2));
+        assertEquals(0, decoded.getWindSpeed(2));
+    }
+
+    @Test
+    public void payloadIsCompact()
+    {
+        byte[] payload = createForecast(DAYS).encode();
+        assertTrue("Payload of " + payload.length + " bytes", payload.length <= MAX_PAYLOAD_BYTES);
+        assertTrue("Payload of " + payload.length + " bytes isn't a third of the loose ints",
+                payload.length * 3 < DAYS * LOOSE_INTS_BYTES_PER_DAY);
+    }
+
+    @Test
+    public void decodeIsFast()
+    {
+        byte[] payload = createForecast(DAYS).encode();
+        PackedForecast decoded = new PackedForecast(DAYS);
+        // warm up, so the JIT compiled decode is what gets measured
+        for (int i = 0; i < DECODE_ITERATIONS; i++)
+            decoded.decode(payload);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < DECODE_ITERATIONS; i++)
+            decoded.decode(payload);
+        long nanosPerDecode = (System.nanoTime() - start) / DECODE_ITERATIONS;
+        assertTrue("Decoding took " + nanosPerDecode + "ns", nanosPerDecode < MAX_DECODE_NANOS);
+        assertEquals(DAYS, decoded.size());
+    }
+
+    @Test
+    public void rejectsUnknownVersionAndTruncatedPayloads()
+    {
+        byte[] payload = createForecast(DAYS).encode();
+        PackedForecast decoded = new PackedForecast(DAYS);
+
+        byte[] unknownVersion = payload.clone();
+        unknownVersion[0] = PackedForecast.VERSION + 1;
+        assertFalse(decoded.decode(unknownVersion));
+        assertEquals(0, decoded.size());
+
+        for (int length = 0; length < payload.length; length++)
+        {
+            byte[] truncated = new byte[length];
+            System.arraycopy(payload, 0, truncated, 0, length);
+            assertFalse("Accepted a payload cut to " + length + " bytes", decoded.decode(truncated));
+            assertEquals(0, decoded.size());
+        }
+        assertFalse(decoded.decode(null));
+    }
+
+    @Test
+    public void findsDaysByJulianDay()
+    {
+        PackedForecast forecast = createForecast(DAYS);
+        assertEquals(0, forecast.indexOfDay(START_DAY));
+        assertEquals(DAYS - 1, forecast.indexOfDay(START_DAY + DAYS - 1));
+        assertEquals(-1, forecast.indexOfDay(START_DAY - 1));
+        assertEquals(-1, forecast.indexOfDay(START_DAY + DAYS));
+    }
+
+    private static PackedForecast createForecast(int days)
+    {
+        PackedForecast forecast = new PackedForecast(days);
+        forecast.setStartDay(START_DAY);
+        int[] weatherIds = {800, 801, 500, 501, 211, 600, 741};
+        for (int i = 0; i < days; i++)
+            forecast.add(weatherIds[i % weatherIds.length], 18 + i % 5, 9 + i % 3, 30 * i, 3 + i % 4);
+        return forecast;
+    }
+}
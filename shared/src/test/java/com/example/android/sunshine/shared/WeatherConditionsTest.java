@@ -0,0 +1,128 @@
+package com.example.android.sunshine.shared;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the tables against the range checks they replaced, for every id and then some.
+ */
+public class WeatherConditionsTest
+{
+    private static final int FIRST_ID = -100;
+    private static final int LAST_ID = WeatherConditions.ID_COUNT + 100;
+
+    @Test
+    public void kindsMatchTheWatchWeatherTypes()
+    {
+        for (int id = FIRST_ID; id <= LAST_ID; id++)
+            assertEquals("Weather id " + id, legacyWeatherType(id), watchWeatherType(id));
+    }
+
+    @Test
+    public void artNamesMatchTheRangeChecks()
+    {
+        for (int id = FIRST_ID; id <= LAST_ID; id++)
+            assertEquals("Weather id " + id, legacyArtName(id), WeatherConditions.getArtName(id));
+    }
+
+    @Test
+    public void imageUrlsMatchTheRangeChecks()
+    {
+        for (int id = FIRST_ID; id <= LAST_ID; id++)
+            assertEquals("Weather id " + id, legacyImageUrl(id), WeatherConditions.getImageUrl(id));
+    }
+
+    /**
+     * How the watch turns a kind into its weather type, clear sky for anything unknown.
+     */
+    private static int watchWeatherType(int weatherId)
+    {
+        int kind = WeatherConditions.getKind(weatherId);
+        return kind == WeatherConditions.KIND_UNKNOWN ? WeatherConditions.KIND_CLEAR : kind;
+    }
+
+    // The watch's ForecastDataItem.translateWeatherIdToWeatherType before the tables
+    private static int legacyWeatherType(int weatherId)
+    {
+        if (weatherId >= 200 && weatherId <= 232)
+            return 1;
+        else if (weatherId >= 300 && weatherId <= 321)
+            return 2;
+        else if (weatherId >= 500 && weatherId <= 504)
+            return 3;
+        else if (weatherId == 511)
+            return 4;
+        else if (weatherId >= 520 && weatherId <= 531)
+            return 3;
+        else if (weatherId >= 600 && weatherId <= 622)
+            return 4;
+        else if (weatherId >= 701 && weatherId <= 761)
+            return 5;
+        else if (weatherId == 761 || weatherId == 781)
+            return 1;
+        else if (weatherId == 800)
+            return 6;
+        else if (weatherId == 801)
+            return 7;
+        else if (weatherId >= 802 && weatherId <= 804)
+            return 8;
+        return 6;
+    }
+
+    // The names Utility.getArtUrlForWeatherCondition put into the art pack URL
+    private static String legacyArtName(int weatherId)
+    {
+        if (weatherId >= 200 && weatherId <= 232)
+            return "storm";
+        else if (weatherId >= 300 && weatherId <= 321)
+            return "light_rain";
+        else if (weatherId >= 500 && weatherId <= 504)
+            return "rain";
+        else if (weatherId == 511)
+            return "snow";
+        else if (weatherId >= 520 && weatherId <= 531)
+            return "rain";
+        else if (weatherId >= 600 && weatherId <= 622)
+            return "snow";
+        else if (weatherId >= 701 && weatherId <= 761)
+            return "fog";
+        else if (weatherId == 761 || weatherId == 781)
+            return "storm";
+        else if (weatherId == 800)
+            return "clear";
+        else if (weatherId == 801)
+            return "light_clouds";
+        else if (weatherId >= 802 && weatherId <= 804)
+            return "clouds";
+        return null;
+    }
+
+    // Utility.getImageUrlForWeatherCondition before the tables
+    private static String legacyImageUrl(int weatherId)
+    {
+        if (weatherId >= 200 && weatherId <= 232)
+            return "http://upload.wikimedia.org/wikipedia/commons/2/28/Thunderstorm_in_Annemasse,_France.jpg";
+        else if (weatherId >= 300 && weatherId <= 321)
+            return "http://upload.wikimedia.org/wikipedia/commons/a/a0/Rain_on_leaf_504605006.jpg";
+        else if (weatherId >= 500 && weatherId <= 504)
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        else if (weatherId == 511)
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        else if (weatherId >= 520 && weatherId <= 531)
+            return "http://upload.wikimedia.org/wikipedia/commons/6/6c/Rain-on-Thassos.jpg";
+        else if (weatherId >= 600 && weatherId <= 622)
+            return "http://upload.wikimedia.org/wikipedia/commons/b/b8/Fresh_snow.JPG";
+        else if (weatherId >= 701 && weatherId <= 761)
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e6/Westminster_fog_-_London_-_UK.jpg";
+        else if (weatherId == 761 || weatherId == 781)
+            return "http://upload.wikimedia.org/wikipedia/commons/d/dc/Raised_dust_ahead_of_a_severe_thunderstorm_1.jpg";
+        else if (weatherId == 800)
+            return "http://upload.wikimedia.org/wikipedia/commons/7/7e/A_few_trees_and_the_sun_(6009964513).jpg";
+        else if (weatherId == 801)
+            return "http://upload.wikimedia.org/wikipedia/commons/e/e7/Cloudy_Blue_Sky_(5031259890).jpg";
+        else if (weatherId >= 802 && weatherId <= 804)
+            return "http://upload.wikimedia.org/wikipedia/commons/5/54/Cloudy_hills_in_Elis,_Greece_2.jpg";
+        return null;
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.android.sunshine.app;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+
+/**
+ * Draws the face in ambient mode: the time and the date on black and nothing else, with paints of
+ * its own that never anti-alias, so the screen lights up as few pixels as possible and low-bit
+ * screens get only the colors they can show.
+ * <p/>
+ * On screens that need burn-in protection the content moves by a few pixels every minute, so the
+ * same pixels aren't lit for hours. Ambient frames are only drawn on time ticks, and the number
+ * of frames and canvas operations is counted to keep an eye on how much work they do.
+ */
+class AmbientRenderer
+{
+    // Colors for screens showing only a few bits per channel in ambient mode, and for the others
+    private static final int LOW_BIT_TIME_COLOR = Color.WHITE;
+    private static final int LOW_BIT_DATE_COLOR = Color.WHITE;
+    private static final int TIME_COLOR = Color.WHITE;
+    private static final int DATE_COLOR = Color.GRAY;
+    // Positions cycled through along each axis, one step a minute
+    private static final int BURN_IN_SHIFT_STEPS = 5;
+
+    private final Paint timePaint;
+    private final Paint datePaint;
+    private final int burnInShiftStepPx;
+    private boolean lowBit;
+    private boolean burnInProtection;
+
+    private long frameCount;
+    private long drawOpCount;
+    private int lastFrameDrawOps;
+
+    /**
+     * @param burnInShiftStepPx how far one burn-in step moves the content
+     */
+    AmbientRenderer(Typeface typeface, int burnInShiftStepPx)
+    {
+        this.burnInShiftStepPx = burnInShiftStepPx;
+        timePaint = createPaint(typeface);
+        datePaint = createPaint(typeface);
+        applyPalette();
+    }
+
+    private static Paint createPaint(Typeface typeface)
+    {
+        Paint paint = new Paint();
+        paint.setTypeface(typeface);
+        paint.setAntiAlias(false);
+        paint.setTextAlign(Paint.Align.CENTER);
+        return paint;
+    }
+
+    void setTextSizes(float timeTextSize, float dateTextSize)
+    {
+        timePaint.setTextSize(timeTextSize);
+        datePaint.setTextSize(dateTextSize);
+    }
+
+    /**
+     * Takes the screen properties from {@code onPropertiesChanged}.
+     */
+    void setScreenProperties(boolean lowBit, boolean burnInProtection)
+    {
+        this.lowBit = lowBit;
+        this.burnInProtection = burnInProtection;
+        applyPalette();
+    }
+
+    private void applyPalette()
+    {
+        timePaint.setColor(lowBit ? LOW_BIT_TIME_COLOR : TIME_COLOR);
+        datePaint.setColor(lowBit ? LOW_BIT_DATE_COLOR : DATE_COLOR);
+    }
+
+    /**
+     * Draws a frame. Doesn't allocate.
+     *
+     * @param time the characters of the time, of which {@code timeLength} are used
+     */
+    void draw(Canvas canvas, long now, int centerX, float timeY, float dateY, char[] time, int timeLength,
+              String date)
+    {
+        int shiftX = 0;
+        int shiftY = 0;
+        if (burnInProtection)
+        {
+            long minute = now / 60000;
+            shiftX = (int) (minute % BURN_IN_SHIFT_STEPS - BURN_IN_SHIFT_STEPS / 2) * burnInShiftStepPx;
+            shiftY = (int) (minute / BURN_IN_SHIFT_STEPS % BURN_IN_SHIFT_STEPS - BURN_IN_SHIFT_STEPS / 2)
+                    * burnInShiftStepPx;
+        }
+
+        int drawOps = 0;
+        canvas.drawColor(Color.BLACK);
+        drawOps++;
+        canvas.drawText(time, 0, timeLength, centerX + shiftX, timeY + shiftY, timePaint);
+        drawOps++;
+        canvas.drawText(date, centerX + shiftX, dateY + shiftY, datePaint);
+        drawOps++;
+
+        lastFrameDrawOps = drawOps;
+        drawOpCount += drawOps;
+        frameCount++;
+    }
+
+    long getFrameCount()
+    {
+        return frameCount;
+    }
+
+    long getDrawOpCount()
+    {
+        return drawOpCount;
+    }
+
+    int getLastFrameDrawOps()
+    {
+        return lastFrameDrawOps;
+    }
+
+    String summarize()
+    {
+        return frameCount + " ambient frames, " + drawOpCount + " draw ops, " + lastFrameDrawOps + " in the last one";
+    }
+}
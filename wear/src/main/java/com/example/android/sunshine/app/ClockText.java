@@ -0,0 +1,73 @@
+package com.example.android.sunshine.app;
+
+/**
+ * The text of the clock, H:MM or H:MM:SS, kept in a char array that is refilled in place so
+ * drawing the time every second creates no objects.
+ */
+class ClockText
+{
+    private static final int SECONDS_IN_A_DAY = 24 * 60 * 60;
+
+    private final char[] chars = new char["23:59:59".length()];
+    private int length;
+    private long formattedSecond = -1;
+    private boolean formattedWithSeconds;
+
+    /**
+     * Fills in the time of day at {@code millis}.
+     *
+     * @param zoneOffsetMillis offset of the local time zone at {@code millis}, daylight saving
+     *                         included
+     * @param showSeconds      whether to add the seconds
+     */
+    void update(long millis, int zoneOffsetMillis, boolean showSeconds)
+    {
+        long second = (millis + zoneOffsetMillis) / 1000;
+        if (second == formattedSecond && showSeconds == formattedWithSeconds)
+            return;
+        formattedSecond = second;
+        formattedWithSeconds = showSeconds;
+
+        int secondOfDay = (int) (second % SECONDS_IN_A_DAY);
+        if (secondOfDay < 0)
+            secondOfDay += SECONDS_IN_A_DAY;
+        int hour = secondOfDay / 3600;
+        int minute = secondOfDay / 60 % 60;
+
+        int position = 0;
+        if (hour >= 10)
+            chars[position++] = (char) ('0' + hour / 10);
+        chars[position++] = (char) ('0' + hour % 10);
+        position = appendTwoDigits(position, minute);
+        if (showSeconds)
+            position = appendTwoDigits(position, secondOfDay % 60);
+        length = position;
+    }
+
+    private int appendTwoDigits(int position, int value)
+    {
+        chars[position++] = ':';
+        chars[position++] = (char) ('0' + value / 10);
+        chars[position++] = (char) ('0' + value % 10);
+        return position;
+    }
+
+    /**
+     * The characters of the time, only the first {@link #length()} of them are valid.
+     */
+    char[] getChars()
+    {
+        return chars;
+    }
+
+    int length()
+    {
+        return length;
+    }
+
+    @Override
+    public String toString()
+    {
+        return new String(chars, 0, length);
+    }
+}
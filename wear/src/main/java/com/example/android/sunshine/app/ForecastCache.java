@@ -0,0 +1,130 @@
+package com.example.android.sunshine.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.annotation.Nullable;
+import android.util.Base64;
+
+import com.example.android.sunshine.shared.PackedForecast;
+
+/**
+ * The last forecast the face showed, kept on the watch so a newly created engine can draw the
+ * weather right away instead of waiting for the Data API to connect and hand the data item over.
+ * <p/>
+ * Holds the day that was shown, the units, the forecast window it came from and its version.
+ * Saving something that is already stored writes nothing, and writes go to disk in the
+ * background.
+ */
+class ForecastCache
+{
+    private static final String PREFS_NAME = "forecast_cache";
+    private static final String HAS_DATA_KEY = "has_data";
+    private static final String WEATHER_TYPE_KEY = "weather_type";
+    private static final String MAX_TEMP_KEY = "max_temp";
+    private static final String MIN_TEMP_KEY = "min_temp";
+    private static final String WIND_DIRECTION_KEY = "wind_direction";
+    private static final String WIND_SPEED_KEY = "wind_speed";
+    private static final String IS_METRIC_KEY = "is_metric";
+    private static final String FORECAST_DAYS_KEY = "forecast_days";
+    private static final String DATA_VERSION_KEY = "data_version";
+
+    private final SharedPreferences prefs;
+    // What was saved or loaded last, so saving it again can be skipped
+    private ForecastDataItem storedItem;
+    private boolean storedIsMetric;
+    private String storedForecastDays;
+    private long storedDataVersion;
+
+    ForecastCache(Context context)
+    {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @return the day shown last, null if nothing usable was saved
+     */
+    @Nullable
+    ForecastDataItem loadDataItem()
+    {
+        if (!prefs.getBoolean(HAS_DATA_KEY, false))
+            return null;
+        int weatherType = prefs.getInt(WEATHER_TYPE_KEY, 0);
+        if (!ForecastDataItem.isWeatherType(weatherType))
+            return null;
+        //noinspection WrongConstant
+        storedItem = new ForecastDataItem(weatherType, prefs.getInt(MAX_TEMP_KEY, 0), prefs.getInt(MIN_TEMP_KEY, 0),
+                prefs.getInt(WIND_DIRECTION_KEY, ForecastDataItem.NORTH), prefs.getInt(WIND_SPEED_KEY, 0));
+        storedIsMetric = prefs.getBoolean(IS_METRIC_KEY, false);
+        storedForecastDays = prefs.getString(FORECAST_DAYS_KEY, null);
+        storedDataVersion = prefs.getLong(DATA_VERSION_KEY, 0);
+        // a copy, the caller goes on changing the one it gets
+        //noinspection WrongConstant
+        return new ForecastDataItem(storedItem.getWeatherType(), storedItem.getMaxTemp(), storedItem.getMinTemp(),
+                storedItem.getWindDirection(), storedItem.getWindSpeed());
+    }
+
+    /**
+     * Only meaningful after {@link #loadDataItem()} found something.
+     */
+    boolean loadIsMetric()
+    {
+        return storedIsMetric;
+    }
+
+    /**
+     * Only meaningful after {@link #loadDataItem()} found something.
+     */
+    long loadDataVersion()
+    {
+        return storedDataVersion;
+    }
+
+    /**
+     * Decodes the saved forecast window into {@code forecastDays}, which is left empty if there
+     * isn't one. Only meaningful after {@link #loadDataItem()} found something.
+     *
+     * @return whether a window was restored
+     */
+    boolean loadForecastDays(PackedForecast forecastDays)
+    {
+        if (storedForecastDays == null)
+        {
+            forecastDays.clear();
+            return false;
+        }
+        return forecastDays.decode(Base64.decode(storedForecastDays, Base64.NO_WRAP));
+    }
+
+    /**
+     * Saves what the face shows now, unless it's what is already saved.
+     *
+     * @return whether anything was written
+     */
+    boolean save(ForecastDataItem dataItem, boolean isMetric, PackedForecast forecastDays, long dataVersion)
+    {
+        String encodedDays = forecastDays.size() == 0
+                ? null : Base64.encodeToString(forecastDays.encode(), Base64.NO_WRAP);
+        if (dataItem.equals(storedItem) && isMetric == storedIsMetric && dataVersion == storedDataVersion
+                && (encodedDays == null ? storedForecastDays == null : encodedDays.equals(storedForecastDays)))
+            return false;
+
+        //noinspection WrongConstant
+        storedItem = new ForecastDataItem(dataItem.getWeatherType(), dataItem.getMaxTemp(), dataItem.getMinTemp(),
+                dataItem.getWindDirection(), dataItem.getWindSpeed());
+        storedIsMetric = isMetric;
+        storedForecastDays = encodedDays;
+        storedDataVersion = dataVersion;
+        prefs.edit()
+                .putBoolean(HAS_DATA_KEY, true)
+                .putInt(WEATHER_TYPE_KEY, dataItem.getWeatherType())
+                .putInt(MAX_TEMP_KEY, dataItem.getMaxTemp())
+                .putInt(MIN_TEMP_KEY, dataItem.getMinTemp())
+                .putInt(WIND_DIRECTION_KEY, dataItem.getWindDirection())
+                .putInt(WIND_SPEED_KEY, dataItem.getWindSpeed())
+                .putBoolean(IS_METRIC_KEY, isMetric)
+                .putString(FORECAST_DAYS_KEY, encodedDays)
+                .putLong(DATA_VERSION_KEY, dataVersion)
+                .apply();
+        return true;
+    }
+}
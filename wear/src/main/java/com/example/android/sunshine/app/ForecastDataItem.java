@@ -3,6 +3,8 @@ package com.example.android.sunshine.app;
 import android.support.annotation.DrawableRes;
 import android.support.annotation.IntDef;
 
+import com.example.android.sunshine.shared.WeatherConditions;
+
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 
@@ -36,14 +38,14 @@ public class ForecastDataItem
     {
     }
 
-    private static final int STORM = 1;
-    private static final int LIGHT_RAIN = 2;
-    private static final int RAIN = 3;
-    private static final int SNOW = 4;
-    private static final int FOG = 5;
-    private static final int CLEAR_SKY = 6;
-    private static final int LIGHT_CLOUDS = 7;
-    private static final int CLOUDS = 8;
+    private static final int STORM = WeatherConditions.KIND_STORM;
+    private static final int LIGHT_RAIN = WeatherConditions.KIND_LIGHT_RAIN;
+    private static final int RAIN = WeatherConditions.KIND_RAIN;
+    private static final int SNOW = WeatherConditions.KIND_SNOW;
+    private static final int FOG = WeatherConditions.KIND_FOG;
+    private static final int CLEAR_SKY = WeatherConditions.KIND_CLEAR;
+    private static final int LIGHT_CLOUDS = WeatherConditions.KIND_LIGHT_CLOUDS;
+    private static final int CLOUDS = WeatherConditions.KIND_CLOUDS;
 
     @WeatherType
     private int weatherType;
@@ -130,6 +132,11 @@ public class ForecastDataItem
 
     }
 
+    public static boolean isWeatherType(int weatherType)
+    {
+        return weatherType >= STORM && weatherType <= CLOUDS;
+    }
+
     @DrawableRes
     public static int getWeatherTypeIconRes(@WeatherType int weatherType)
     {
@@ -157,33 +164,16 @@ public class ForecastDataItem
 
     }
 
+    /**
+     * Weather types are numbered like the kinds of {@link WeatherConditions}, an unknown
+     * condition shows as a clear sky.
+     */
     @WeatherType
     public static int translateWeatherIdToWeatherType(int weatherId)
     {
-        if (weatherId >= 200 && weatherId <= 232)
-            return STORM;
-        else if (weatherId >= 300 && weatherId <= 321)
-            return LIGHT_RAIN;
-        else if (weatherId >= 500 && weatherId <= 504)
-            return RAIN;
-        else if (weatherId == 511)
-            return SNOW;
-        else if (weatherId >= 520 && weatherId <= 531)
-            return RAIN;
-        else if (weatherId >= 600 && weatherId <= 622)
-            return SNOW;
-        else if (weatherId >= 701 && weatherId <= 761)
-            return FOG;
-        else if (weatherId == 761 || weatherId == 781)
-            return STORM;
-        else if (weatherId == 800)
-            return CLEAR_SKY;
-        else if (weatherId == 801)
-            return LIGHT_CLOUDS;
-        else if (weatherId >= 802 && weatherId <= 804)
-            return CLOUDS;
-
-        return CLEAR_SKY;
+        int kind = WeatherConditions.getKind(weatherId);
+        //noinspection WrongConstant
+        return kind == WeatherConditions.KIND_UNKNOWN ? CLEAR_SKY : kind;
     }
 
     @WindDirection
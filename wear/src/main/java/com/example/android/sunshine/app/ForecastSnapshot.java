@@ -0,0 +1,61 @@
+package com.example.android.sunshine.app;
+
+import android.support.annotation.Nullable;
+
+import com.example.android.sunshine.shared.PackedForecast;
+import com.google.android.gms.wearable.DataMap;
+
+/**
+ * Everything one data item from the phone says about the forecast, decoded off the UI thread so
+ * the engine only has to take it over. Never changes once created, the forecast window included.
+ */
+final class ForecastSnapshot
+{
+    private static final String WEATHER_TYPE_KEY = "weather_type_key";
+    private static final String MAX_TEMP_KEY = "max_temperature_key";
+    private static final String MIN_TEMP_KEY = "min_temperature_key";
+    private static final String WIND_ANGLE_KEY = "wind_angle_key";
+    private static final String WIND_SPEED_KEY = "wind_speed_key";
+    private static final String IS_METRIC_KEY = "is_metric_key";
+    private static final String FORECAST_DAYS_KEY = "forecast_days_key";
+    private static final String DATA_VERSION_KEY = "data_version_key";
+
+    // Version the phone gave the data, 0 for phones that don't version it
+    final long dataVersion;
+    final boolean hasIsMetric;
+    final boolean isMetric;
+    // The day the phone picked as today, only valid if hasToday
+    final boolean hasToday;
+    final int weatherId;
+    final int maxTemp;
+    final int minTemp;
+    final int windAngle;
+    final int windSpeed;
+    // Null if the item had no window or one that didn't decode
+    @Nullable
+    final PackedForecast forecastDays;
+
+    private ForecastSnapshot(DataMap dataMap, int forecastDaysCapacity)
+    {
+        dataVersion = dataMap.getLong(DATA_VERSION_KEY);
+        hasIsMetric = dataMap.containsKey(IS_METRIC_KEY);
+        isMetric = dataMap.getBoolean(IS_METRIC_KEY);
+
+        hasToday = dataMap.containsKey(WEATHER_TYPE_KEY) && dataMap.containsKey(MAX_TEMP_KEY)
+                && dataMap.containsKey(MIN_TEMP_KEY) && dataMap.containsKey(WIND_ANGLE_KEY)
+                && dataMap.containsKey(WIND_SPEED_KEY);
+        weatherId = dataMap.getInt(WEATHER_TYPE_KEY);
+        maxTemp = dataMap.getInt(MAX_TEMP_KEY);
+        minTemp = dataMap.getInt(MIN_TEMP_KEY);
+        windAngle = dataMap.getInt(WIND_ANGLE_KEY);
+        windSpeed = dataMap.getInt(WIND_SPEED_KEY);
+
+        PackedForecast days = new PackedForecast(forecastDaysCapacity);
+        forecastDays = days.decode(dataMap.getByteArray(FORECAST_DAYS_KEY)) ? days : null;
+    }
+
+    static ForecastSnapshot fromDataMap(DataMap dataMap, int forecastDaysCapacity)
+    {
+        return new ForecastSnapshot(dataMap, forecastDaysCapacity);
+    }
+}
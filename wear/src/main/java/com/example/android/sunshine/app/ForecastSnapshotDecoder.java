@@ -0,0 +1,232 @@
+package com.example.android.sunshine.app;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.gms.wearable.DataEvent;
+import com.google.android.gms.wearable.DataEventBuffer;
+import com.google.android.gms.wearable.DataItem;
+import com.google.android.gms.wearable.DataItemBuffer;
+import com.google.android.gms.wearable.DataMapItem;
+
+/**
+ * Turns the data items the Data API hands the engine into {@link ForecastSnapshot}s on a
+ * background thread, and gives the engine a single snapshot to swap in on its own thread.
+ * <p/>
+ * Of a batch of events only the newest item of the forecast path is kept, so a buffer holding
+ * several updates is decoded once. A batch arriving while the previous one still waits to be
+ * decoded replaces it, and so does a snapshot waiting for the engine, so the engine only ever
+ * sees the newest state.
+ */
+class ForecastSnapshotDecoder
+{
+    private static final String TAG = ForecastSnapshotDecoder.class.getSimpleName();
+
+    private static final int MSG_DECODE = 1;
+    private static final int MSG_DELIVER = 2;
+
+    interface Callback
+    {
+        /**
+         * Called on the thread the decoder was created on.
+         */
+        void onSnapshot(ForecastSnapshot snapshot);
+    }
+
+    private final String path;
+    private final int forecastDaysCapacity;
+    private final Callback callback;
+    private final HandlerThread thread;
+    private final Handler decodeHandler;
+    private final Handler deliverHandler;
+
+    // Frozen and waiting to be decoded, only ever the newest one
+    private DataItem pendingItem;
+    // Decoded and waiting to be taken by the engine
+    private ForecastSnapshot pendingSnapshot;
+    // Set by quit(), after which nothing is decoded or delivered any more
+    private boolean quit;
+
+    private long batchCount;
+    private long eventCount;
+    private int lastBatchEvents;
+    private long decodeCount;
+    private long supersededCount;
+    private long totalDecodeNanos;
+    private long maxDecodeNanos;
+
+    /**
+     * Must be created on the engine's thread, which is where snapshots are delivered.
+     *
+     * @param path                 the data item path holding the forecast
+     * @param forecastDaysCapacity days each snapshot's forecast window is sized for
+     */
+    ForecastSnapshotDecoder(String path, int forecastDaysCapacity, Callback callback)
+    {
+        this.path = path;
+        this.forecastDaysCapacity = forecastDaysCapacity;
+        this.callback = callback;
+
+        thread = new HandlerThread(TAG, android.os.Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        decodeHandler = new DecodeHandler(thread.getLooper());
+        deliverHandler = new DecodeHandler(Looper.myLooper());
+    }
+
+    /**
+     * Takes the newest change to the forecast out of {@code dataEvents}. Doesn't release the
+     * buffer, that's still up to the caller.
+     */
+    void submit(DataEventBuffer dataEvents)
+    {
+        DataItem newest = null;
+        int events = 0;
+        for (DataEvent event : dataEvents)
+        {
+            events++;
+            if (event.getType() == DataEvent.TYPE_CHANGED && path.equals(event.getDataItem().getUri().getPath()))
+                newest = event.getDataItem();
+        }
+        submit(newest, events);
+    }
+
+    /**
+     * Takes the forecast item out of {@code dataItems}. Doesn't release the buffer, that's
+     * still up to the caller.
+     */
+    void submit(DataItemBuffer dataItems)
+    {
+        DataItem newest = null;
+        int items = 0;
+        for (DataItem item : dataItems)
+        {
+            items++;
+            if (path.equals(item.getUri().getPath()))
+                newest = item;
+        }
+        submit(newest, items);
+    }
+
+    private void submit(DataItem newest, int events)
+    {
+        // the buffer's items are only valid until it's released, a frozen copy can be passed on
+        DataItem frozen = newest == null ? null : newest.freeze();
+        synchronized (this)
+        {
+            batchCount++;
+            eventCount += events;
+            lastBatchEvents = events;
+            if (frozen == null || quit)
+                return;
+            if (pendingItem != null)
+                supersededCount++;
+            pendingItem = frozen;
+            if (!decodeHandler.hasMessages(MSG_DECODE))
+                decodeHandler.sendEmptyMessage(MSG_DECODE);
+        }
+    }
+
+    /**
+     * Runs on the decoding thread.
+     */
+    private void decodePending()
+    {
+        DataItem item;
+        synchronized (this)
+        {
+            if (quit)
+                return;
+            item = pendingItem;
+            pendingItem = null;
+        }
+        if (item == null)
+            return;
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        ForecastSnapshot snapshot = ForecastSnapshot.fromDataMap(DataMapItem.fromDataItem(item).getDataMap(),
+                forecastDaysCapacity);
+        long decodeNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        synchronized (this)
+        {
+            // quit while decoding, the engine may be gone already
+            if (quit)
+                return;
+            decodeCount++;
+            totalDecodeNanos += decodeNanos;
+            maxDecodeNanos = Math.max(maxDecodeNanos, decodeNanos);
+            if (pendingSnapshot != null)
+                supersededCount++;
+            pendingSnapshot = snapshot;
+            if (!deliverHandler.hasMessages(MSG_DELIVER))
+                deliverHandler.sendEmptyMessage(MSG_DELIVER);
+        }
+        Log.d(TAG, "Decoded a snapshot in " + decodeNanos / 1000 + "us");
+    }
+
+    /**
+     * Runs on the engine's thread.
+     */
+    private void deliverPending()
+    {
+        ForecastSnapshot snapshot;
+        synchronized (this)
+        {
+            if (quit)
+                return;
+            snapshot = pendingSnapshot;
+            pendingSnapshot = null;
+        }
+        if (snapshot != null)
+            callback.onSnapshot(snapshot);
+    }
+
+    /**
+     * Stops decoding and drops whatever hasn't been delivered yet. Nothing is delivered after
+     * this returns, not even a snapshot whose decoding was already running.
+     */
+    void quit()
+    {
+        synchronized (this)
+        {
+            quit = true;
+            pendingItem = null;
+            pendingSnapshot = null;
+        }
+        deliverHandler.removeMessages(MSG_DELIVER);
+        thread.quit();
+    }
+
+    synchronized String summarize()
+    {
+        return batchCount + " batches, " + eventCount + " events, " + lastBatchEvents + " in the last batch, "
+                + decodeCount + " decodes averaging " + (decodeCount == 0 ? 0 : totalDecodeNanos / decodeCount / 1000)
+                + "us, max " + maxDecodeNanos / 1000 + "us, " + supersededCount + " superseded";
+    }
+
+    private class DecodeHandler extends Handler
+    {
+        DecodeHandler(Looper looper)
+        {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(Message msg)
+        {
+            switch (msg.what)
+            {
+                case MSG_DECODE:
+                    decodePending();
+                    break;
+                case MSG_DELIVER:
+                    deliverPending();
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.android.sunshine.app;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the durations of the most recent frames, so how long drawing the watch face takes can be
+ * looked at on a real watch. Recording a frame doesn't allocate, only computing the percentiles
+ * does sorting into a buffer created up front.
+ */
+class FrameTimeRecorder
+{
+    private final long[] frameNanos;
+    private final long[] sorted;
+    private int count;
+    private int next;
+    private long totalFrames;
+
+    FrameTimeRecorder(int capacity)
+    {
+        frameNanos = new long[capacity];
+        sorted = new long[capacity];
+    }
+
+    void record(long nanos)
+    {
+        frameNanos[next] = nanos;
+        next = (next + 1) % frameNanos.length;
+        if (count < frameNanos.length)
+            count++;
+        totalFrames++;
+    }
+
+    /**
+     * Frames recorded since creation or the last {@link #reset()}, including the ones no longer
+     * kept.
+     */
+    long getTotalFrames()
+    {
+        return totalFrames;
+    }
+
+    /**
+     * @return the given percentile of the kept frames in nanoseconds, 0 without any
+     */
+    long getPercentileNanos(int percentile)
+    {
+        if (count == 0)
+            return 0;
+        System.arraycopy(frameNanos, 0, sorted, 0, count);
+        Arrays.sort(sorted, 0, count);
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return sorted[Math.max(0, Math.min(index, count - 1))];
+    }
+
+    void reset()
+    {
+        count = 0;
+        next = 0;
+        totalFrames = 0;
+    }
+
+    /**
+     * A one line summary, e.g. for the log.
+     */
+    String summarize()
+    {
+        return totalFrames + " frames, p50 " + getPercentileNanos(50) / 1000 + "us, p95 "
+                + getPercentileNanos(95) / 1000 + "us, max " + getPercentileNanos(100) / 1000 + "us";
+    }
+}
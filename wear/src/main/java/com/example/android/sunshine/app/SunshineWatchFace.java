@@ -22,9 +22,7 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.Typeface;
@@ -32,6 +30,7 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.v4.util.Pair;
@@ -41,28 +40,25 @@ import android.util.Log;
 import android.view.SurfaceHolder;
 import android.view.WindowInsets;
 
+import com.example.android.sunshine.shared.DataRequest;
+import com.example.android.sunshine.shared.PackedForecast;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
 import com.google.android.gms.wearable.DataApi;
-import com.google.android.gms.wearable.DataEvent;
 import com.google.android.gms.wearable.DataEventBuffer;
-import com.google.android.gms.wearable.DataItem;
 import com.google.android.gms.wearable.DataItemBuffer;
-import com.google.android.gms.wearable.DataMap;
-import com.google.android.gms.wearable.DataMapItem;
 import com.google.android.gms.wearable.Node;
 import com.google.android.gms.wearable.NodeApi;
-import com.google.android.gms.wearable.PutDataMapRequest;
 import com.google.android.gms.wearable.Wearable;
 
 import java.lang.ref.WeakReference;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Random;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
-import hugo.weaving.DebugLog;
 import lombok.NonNull;
 
 /**
@@ -86,6 +82,17 @@ public class SunshineWatchFace extends CanvasWatchFaceService
     private static final int MSG_UPDATE_TIME = 0;
     private static final String TAG = SunshineWatchFace.class.getSimpleName();
 
+    private static final long DAY_IN_MILLIS = TimeUnit.DAYS.toMillis(1);
+    // Requests for data sent this soon after the last one are dropped
+    private static final long REQUEST_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+    // How old the phone's forecast may be to be worth sending, a little over its sync interval
+    private static final long DATA_MAX_AGE_MS = TimeUnit.HOURS.toMillis(4);
+    // Julian day of 1970-01-01, as android.text.format.Time has it
+    private static final int EPOCH_JULIAN_DAY = 2440588;
+    private static final int FORECAST_DAYS_CAPACITY = 14;
+    // Frames between two frame time summaries in the log, also how many of them are kept
+    private static final int FRAME_TIME_REPORT_INTERVAL = 300;
+
     @Override
     public Engine onCreateEngine()
     {
@@ -120,14 +127,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
     private class Engine extends CanvasWatchFaceService.Engine implements
             GoogleApiClient.ConnectionCallbacks, GoogleApiClient.OnConnectionFailedListener
     {
-        private static final String WEATHER_TYPE_KEY = "weather_type_key";
-        private static final String MAX_TEMP_KEY = "max_temperature_key";
-        private static final String MIN_TEMP_KEY = "min_temperature_key";
-        private static final String WIND_ANGLE_KEY = "wind_angle_key";
-        private static final String WIND_SPEED_KEY = "wind_speed_key";
         private static final String SUNSHINE_CONFIG = "/sunshine_wear_config";
-        private static final String IS_METRIC_KEY = "is_metric_key";
-        private static final String REQUEST_UPDATE_KEY = "request_update_key";
         private static final String MESSAGE_CONFIG = "/path/message";
         final Handler mUpdateTimeHandler = new EngineHandler(this);
         boolean mRegisteredTimeZoneReceiver = false;
@@ -144,10 +144,28 @@ public class SunshineWatchFace extends CanvasWatchFaceService
          */
         boolean mLowBitAmbient;
         private ForecastDataItem dataItem;
+        // The forecast window sent by the phone, swapped for every snapshot's
+        private PackedForecast forecastDays = new PackedForecast(FORECAST_DAYS_CAPACITY);
+        private ForecastSnapshotDecoder snapshotDecoder;
+        private ForecastCache forecastCache;
+        // Version of the data shown, as the phone stamped it
+        private long dataVersion;
+        private int nextRequestId = new Random().nextInt();
+        private long lastRequestAt;
+        private int requestsSent;
+        private int requestsSuppressed;
+        // Whether what's shown came from the cache and the data layer hasn't delivered yet
+        private boolean dataFromCache;
+        // For measuring how long it takes until the weather is on the screen
+        private long engineCreatedAt;
+        private boolean firstWeatherFrameLogged;
+        private boolean dataLayerDeliveryLogged;
         private GoogleApiClient googleApiClient;
         private DataApi.DataListener onDataChangedListener = new SunshineDataListener();
         private ResultCallback<DataItemBuffer> onConnectedResultCallback = new SunshineResultCallback();
         private Bitmap weatherIcon;
+        private WeatherIconCache iconCache;
+        private AmbientRenderer ambientRenderer;
         private String noData;
         private float margin;
         private float horizontal_margin;
@@ -168,12 +186,22 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         private boolean showAlternative;
 
         private Calendar calendar;
+        // Read on every frame, kept in step with the calendar's
+        private TimeZone timeZone;
+        private final ClockText clockText = new ClockText();
+        // Everything but the time in interactive mode, redrawn only when invalidated
+        private Bitmap staticLayer;
+        private final Canvas staticLayerCanvas = new Canvas();
+        private boolean staticLayerValid;
+        private long staticLayerRenderCount;
+        private final FrameTimeRecorder frameTimes = new FrameTimeRecorder(FRAME_TIME_REPORT_INTERVAL);
+        private long frameTimesReportedAt;
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver()
         {
             @Override
             public void onReceive(Context context, Intent intent)
             {
-                calendar.setTimeZone(TimeZone.getDefault());
+                updateTimeZone();
                 invalidate();
             }
         };
@@ -183,6 +211,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         public void onCreate(SurfaceHolder holder)
         {
             super.onCreate(holder);
+            engineCreatedAt = SystemClock.elapsedRealtime();
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(SunshineWatchFace.this)
                     .setCardPeekMode(WatchFaceStyle.PEEK_MODE_VARIABLE)
@@ -198,6 +227,51 @@ public class SunshineWatchFace extends CanvasWatchFaceService
                     .build();
 
             initResources();
+            restoreFromCache();
+            snapshotDecoder = new ForecastSnapshotDecoder(SUNSHINE_CONFIG, FORECAST_DAYS_CAPACITY,
+                    new ForecastSnapshotDecoder.Callback()
+                    {
+                        @Override
+                        public void onSnapshot(ForecastSnapshot snapshot)
+                        {
+                            applySnapshot(snapshot);
+                        }
+                    });
+        }
+
+        /**
+         * Shows the forecast saved by the last engine until the data layer delivers, so the face
+         * doesn't show {@link #noData} while connecting. The bottom line is laid out once the
+         * insets arrive.
+         */
+        private void restoreFromCache()
+        {
+            forecastCache = new ForecastCache(SunshineWatchFace.this);
+            ForecastDataItem cached = forecastCache.loadDataItem();
+            if (cached == null)
+                return;
+            dataItem = cached;
+            isMetric = forecastCache.loadIsMetric();
+            dataVersion = forecastCache.loadDataVersion();
+            dataFromCache = true;
+            // the day may have changed since it was saved
+            int today = forecastCache.loadForecastDays(forecastDays) ? getTodayInForecastDays() : -1;
+            if (today != -1)
+                exchangeData(forecastDays.getWeatherId(today), forecastDays.getMaxTemp(today),
+                        forecastDays.getMinTemp(today), forecastDays.getWindAngle(today), forecastDays.getWindSpeed(today));
+            Log.d(TAG, "Restored " + dataItem + " from the cache in "
+                    + (SystemClock.elapsedRealtime() - engineCreatedAt) + "ms");
+        }
+
+        /**
+         * Saves what's shown for the next engine, once the data layer delivered it.
+         */
+        private void saveToCache()
+        {
+            if (dataItem == null || dataFromCache)
+                return;
+            if (forecastCache.save(dataItem, isMetric, forecastDays, dataVersion))
+                Log.d(TAG, "Saved " + dataItem + " to the cache");
         }
 
         private void initResources()
@@ -207,6 +281,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             horizontal_margin = resources.getDimension(R.dimen.watch_interior_horizontal_margin);
 
             calendar = Calendar.getInstance();
+            timeZone = calendar.getTimeZone();
             dateText = Utilities.getFullFriendlyDayString(calendar.getTimeInMillis());
 
             mBackgroundPaint = new Paint();
@@ -225,11 +300,14 @@ public class SunshineWatchFace extends CanvasWatchFaceService
 
 
             noData = getString(R.string.no_data);
+            ambientRenderer = new AmbientRenderer(NORMAL_TYPEFACE,
+                    resources.getDimensionPixelSize(R.dimen.burn_in_shift_step));
+            iconCache = new WeatherIconCache(resources);
         }
 
         private void prepareIcon(@NonNull ForecastDataItem item)
         {
-            weatherIcon = BitmapFactory.decodeResource(getResources(), ForecastDataItem.getWeatherTypeIconRes(item.getWeatherType()));
+            weatherIcon = iconCache.getIcon(item.getWeatherType());
         }
 
         private void updateGuiWithData()
@@ -258,30 +336,49 @@ public class SunshineWatchFace extends CanvasWatchFaceService
 
             directionCenterXOffset = - primaryTextPaint.measureText(windDirection) / 2 - 4 * horizontal_margin;
             speedCenterXOffset = secondaryTextPaint.measureText(windSpeed) / 2 - 3 * horizontal_margin;
+            invalidateStaticLayer();
 
 
 
 
         }
 
+        /**
+         * Asks the phone for the forecast, unless it was asked within {@link #REQUEST_TTL_MS}, so
+         * raising the wrist again and again while the answer is on its way sends one request.
+         */
         private void requestDataFromMobile()
         {
+            long now = SystemClock.elapsedRealtime();
+            if (requestsSent > 0 && now - lastRequestAt < REQUEST_TTL_MS)
+            {
+                requestsSuppressed++;
+                Log.d(TAG, "Asked the phone " + (now - lastRequestAt) + "ms ago, " + requestsSuppressed
+                        + " requests suppressed so far");
+                return;
+            }
+            lastRequestAt = now;
+            requestsSent++;
+            final byte[] request = new DataRequest(nextRequestId++, dataVersion, DATA_MAX_AGE_MS).encode();
+
             new AsyncTask<Void, Void, Void>()
             {
                 @Override
                 protected Void doInBackground(Void... params)
                 {
                     NodeApi.GetConnectedNodesResult nodes = Wearable.NodeApi.getConnectedNodes(googleApiClient).await();
-                    PutDataMapRequest putDataMapReq = PutDataMapRequest.create(SUNSHINE_CONFIG);
-
-                    putDataMapReq.getDataMap().putBoolean(REQUEST_UPDATE_KEY, true);
-
+                    String nodeId = pickBestNodeId(nodes.getNodes());
+                    if (nodeId == null)
+                    {
+                        Log.d(TAG, "No phone connected to ask for data");
+                        return null;
+                    }
 
                     boolean success =
                             Wearable.MessageApi
-                                    .sendMessage(googleApiClient, pickBestNodeId(nodes.getNodes()), MESSAGE_CONFIG, new byte[0])
+                                    .sendMessage(googleApiClient, nodeId, MESSAGE_CONFIG, request)
                                     .await().getStatus().isSuccess();
-                                    Log.d(TAG, "Data item success => " + success);
+                    Log.d(TAG, "Data request success => " + success);
                     return null;
                 }
 
@@ -311,7 +408,18 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         public void onDestroy()
         {
             releaseGoogleApiClient();
+            snapshotDecoder.quit();
+            Log.d(TAG, "Data items: " + snapshotDecoder.summarize() + ", " + requestsSent + " requests sent and "
+                    + requestsSuppressed + " suppressed");
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            if (staticLayer != null)
+            {
+                staticLayer.recycle();
+                staticLayer = null;
+            }
+            iconCache.clear();
+            weatherIcon = null;
+            Log.d(TAG, "Static layer rendered " + staticLayerRenderCount + " times, frame times: " + frameTimes.summarize());
             super.onDestroy();
         }
 
@@ -335,7 +443,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
                 registerReceiver();
 
                 // Update time zone in case it changed while we weren't visible.
-                calendar.setTimeZone(TimeZone.getDefault());
+                updateTimeZone();
                 long now = System.currentTimeMillis();
                 calendar.setTimeInMillis(now);
                 googleApiClient.connect();
@@ -361,6 +469,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             }
         }
 
+        private void updateTimeZone()
+        {
+            timeZone = TimeZone.getDefault();
+            calendar.setTimeZone(timeZone);
+        }
+
         private void registerReceiver()
         {
             if (mRegisteredTimeZoneReceiver)
@@ -407,6 +521,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
 
             float smallTextSize = resources.getDimension(isRound ? R.dimen.small_text_size_round : R.dimen.small_text_size);
             smallTextPaint.setTextSize(smallTextSize);
+            ambientRenderer.setTextSizes(textSize, smallTextSize);
             smallTextPaint.getTextBounds("0", 0, 1, bounds);
             final int dateTextHeight = bounds.height();
 
@@ -419,6 +534,13 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             final int secondaryTextHeight = bounds.height();
             lastRowYPosition = dividerYPosition + dividerWidthHeight.second + secondaryTextHeight + margin;
 
+            // the icons come scaled to the layout, which drops the ones scaled before
+            // the same size on round screens, the icons only come in 40dp
+            iconCache.setIconSize(resources.getDimensionPixelSize(R.dimen.weather_icon_size));
+            if (dataItem != null)
+                prepareBottomLine(dataItem);
+            invalidateStaticLayer();
+
 
         }
 
@@ -427,6 +549,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         {
             super.onPropertiesChanged(properties);
             mLowBitAmbient = properties.getBoolean(PROPERTY_LOW_BIT_AMBIENT, false);
+            ambientRenderer.setScreenProperties(mLowBitAmbient,
+                    properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
         }
 
         @Override
@@ -438,7 +562,12 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             long now = System.currentTimeMillis();
             calendar.setTimeInMillis(now);
             if (day != calendar.get(Calendar.DAY_OF_YEAR))
+            {
                 dateText = Utilities.getFullFriendlyDayString(System.currentTimeMillis());
+                invalidateStaticLayer();
+                // a new day, which the phone may have sent already
+                showTodayFromForecastDays();
+            }
             invalidate();
         }
 
@@ -449,8 +578,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             if (mAmbient != inAmbientMode)
             {
                 mAmbient = inAmbientMode;
-                if (mLowBitAmbient)
-                    primaryTextPaint.setAntiAlias(!inAmbientMode);
+                if (!inAmbientMode)
+                    Log.d(TAG, "Leaving ambient mode: " + ambientRenderer.summarize());
 
                 //If we quit ambient mode, and there is no data, we should attempt to get it from the device
                 if (!mAmbient && googleApiClient.isConnected() && dataItem == null)
@@ -478,6 +607,7 @@ public class SunshineWatchFace extends CanvasWatchFaceService
                 case TAP_TYPE_TAP:
                     // The user has completed the tap gesture.
                     showAlternative = !showAlternative;
+                    invalidateStaticLayer();
                     if(!isInAmbientMode())
                         invalidate();
                     break;
@@ -488,45 +618,90 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         @Override
         public void onDraw(Canvas canvas, Rect bounds)
         {
-            // Draw the background.
+            long frameStart = System.nanoTime();
+            // Draw H:MM in ambient mode or H:MM:SS in interactive mode. Runs every second, so
+            // nothing on this path may allocate: the digits are filled into a reused char array.
+            final int center = bounds.width() / 2;
+            long now = System.currentTimeMillis();
+            clockText.update(now, timeZone.getOffset(now), !mAmbient);
+
             if (isInAmbientMode())
-                canvas.drawColor(Color.BLACK);
-            else
-                canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
+            {
+                ambientRenderer.draw(canvas, now, center, clockTextYPosition, dateYPosition,
+                        clockText.getChars(), clockText.length(), dateText);
+                return;
+            }
+
+            if (!staticLayerValid || staticLayer == null
+                    || staticLayer.getWidth() != bounds.width() || staticLayer.getHeight() != bounds.height())
+                renderStaticLayer(bounds);
+            // everything but the time, drawn once into the layer
+            canvas.drawBitmap(staticLayer, 0, 0, null);
+            canvas.drawText(clockText.getChars(), 0, clockText.length(), center, clockTextYPosition, primaryTextPaint);
+            if (!firstWeatherFrameLogged && dataItem != null)
+                logFirstWeatherFrame();
+
+            // reported from the timer, building the summary allocates
+            frameTimes.record(System.nanoTime() - frameStart);
+        }
+
+        private void logFirstWeatherFrame()
+        {
+            firstWeatherFrameLogged = true;
+            Log.d(TAG, "First weather frame " + (SystemClock.elapsedRealtime() - engineCreatedAt)
+                    + "ms after engine creation, from " + (dataFromCache ? "the cache" : "the data layer"));
+        }
+
+        /**
+         * Draws everything that doesn't change with the time into {@link #staticLayer}: the
+         * background, the date, the divider and the weather row.
+         */
+        private void renderStaticLayer(Rect bounds)
+        {
+            if (staticLayer == null || staticLayer.getWidth() != bounds.width() || staticLayer.getHeight() != bounds.height())
+            {
+                if (staticLayer != null)
+                    staticLayer.recycle();
+                staticLayer = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+                staticLayerCanvas.setBitmap(staticLayer);
+            }
+            staticLayerValid = true;
+            staticLayerRenderCount++;
+            Canvas canvas = staticLayerCanvas;
+
+            // Draw the background.
+            canvas.drawRect(0, 0, bounds.width(), bounds.height(), mBackgroundPaint);
 
-            // Draw H:MM in ambient mode or H:MM:SS in interactive mode.
             final int center = bounds.width() / 2;
-            long now = System.currentTimeMillis();
-            calendar.setTimeInMillis(now);
-            String text = mAmbient
-                    ? String.format("%d:%02d", calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE))
-                    : String.format("%d:%02d:%02d", calendar.get(Calendar.HOUR_OF_DAY),
-                    calendar.get(Calendar.MINUTE), calendar.get(Calendar.SECOND));
-            canvas.drawText(text, center, clockTextYPosition, primaryTextPaint);
             canvas.drawText(dateText, center, dateYPosition, smallTextPaint);
 
-            if (!isInAmbientMode())
-            {
-                canvas.drawRect(center - dividerWidthHeight.first / 2, dividerYPosition,
-                        center + dividerWidthHeight.first / 2, dividerYPosition + dividerWidthHeight.second, primaryTextPaint);
+            canvas.drawRect(center - dividerWidthHeight.first / 2, dividerYPosition,
+                    center + dividerWidthHeight.first / 2, dividerYPosition + dividerWidthHeight.second, primaryTextPaint);
 
-                if (dataItem == null)
-                {
-                    canvas.drawText(noData, center, lastRowYPosition, secondaryTextPaint);
-                }
-                else if(!showAlternative)
-                {
-                    canvas.drawText(maxTemp, center, lastRowYPosition, primaryTextPaint);
-                    canvas.drawBitmap(weatherIcon, center + weatherIconCenterXOffset, lastRowYPosition + weatherIconTextTopYOffset, null);
-                    canvas.drawText(minTemp, center + minTempTextCenterXOffset, lastRowYPosition, secondaryTextPaint);
-                }
-                else
-                {
-                    canvas.drawText(windDirection, center + directionCenterXOffset, lastRowYPosition, primaryTextPaint);
-                    canvas.drawText(windSpeed, center + speedCenterXOffset, lastRowYPosition, secondaryTextPaint);
-                }
+            if (dataItem == null)
+            {
+                canvas.drawText(noData, center, lastRowYPosition, secondaryTextPaint);
+            }
+            else if(!showAlternative)
+            {
+                canvas.drawText(maxTemp, center, lastRowYPosition, primaryTextPaint);
+                canvas.drawBitmap(weatherIcon, center + weatherIconCenterXOffset, lastRowYPosition + weatherIconTextTopYOffset, null);
+                canvas.drawText(minTemp, center + minTempTextCenterXOffset, lastRowYPosition, secondaryTextPaint);
+            }
+            else
+            {
+                canvas.drawText(windDirection, center + directionCenterXOffset, lastRowYPosition, primaryTextPaint);
+                canvas.drawText(windSpeed, center + speedCenterXOffset, lastRowYPosition, secondaryTextPaint);
             }
+        }
 
+        /**
+         * Has the static layer redrawn on the next frame, for whenever the date, the weather row or
+         * the layout changed.
+         */
+        private void invalidateStaticLayer()
+        {
+            staticLayerValid = false;
         }
 
         /**
@@ -555,6 +730,11 @@ public class SunshineWatchFace extends CanvasWatchFaceService
         private void handleUpdateTimeMessage()
         {
             invalidate();
+            if (frameTimes.getTotalFrames() - frameTimesReportedAt >= FRAME_TIME_REPORT_INTERVAL)
+            {
+                frameTimesReportedAt = frameTimes.getTotalFrames();
+                Log.d(TAG, "Frame times: " + frameTimes.summarize());
+            }
             if (shouldTimerBeRunning())
             {
                 long timeMs = System.currentTimeMillis();
@@ -570,7 +750,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             Log.d(TAG, "connected GoogleAPI");
             Wearable.DataApi.addListener(googleApiClient, onDataChangedListener);
             Wearable.DataApi.getDataItems(googleApiClient).setResultCallback(onConnectedResultCallback);
-            if (dataItem == null)
+            // cached data may be old, so ask the phone for its current forecast as if there were none
+            if (dataItem == null || dataFromCache)
                 requestDataFromMobile();
         }
 
@@ -587,45 +768,80 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             Log.d(TAG, "connection failed GoogleApi");
         }
 
-        @DebugLog
-        private boolean processItem(DataItem item)
-        {
-            if (SUNSHINE_CONFIG.equals(item.getUri().getPath()))
+        /**
+         * Takes over a snapshot decoded from the phone's data item, on the engine's thread.
+         */
+        private void applySnapshot(ForecastSnapshot snapshot)
+        {
+            onDataLayerDelivered();
+            dataVersion = snapshot.dataVersion;
+            if (snapshot.hasIsMetric)
+                updateIsMetricIfNeeded(snapshot.isMetric);
+
+            // the snapshot is never changed, so its window can be kept as it is
+            forecastDays = snapshot.forecastDays != null ? snapshot.forecastDays : new PackedForecast(0);
+            boolean dataDiffers = false;
+            // a forecast window that doesn't cover today, e.g. with the watch clock off, falls
+            // back to the day the phone picked as today
+            if (getTodayInForecastDays() != -1)
             {
-                DataMap dataMap = DataMapItem.fromDataItem(item).getDataMap();
-                if (dataMap.containsKey(IS_METRIC_KEY))
-                    updateIsMetricIfNeeded(dataMap.getBoolean(IS_METRIC_KEY));
-
-                if (!dataMap.containsKey(MAX_TEMP_KEY) || !dataMap.containsKey(MIN_TEMP_KEY) || !dataMap.containsKey(WEATHER_TYPE_KEY)
-                        || !dataMap.containsKey(WIND_ANGLE_KEY) || !dataMap.containsKey(WIND_SPEED_KEY))
-                    return false;
-                boolean dataDiffers;
-                if (dataItem == null)
-                {
-                    dataItem = new ForecastDataItem(
-                            ForecastDataItem.translateWeatherIdToWeatherType(dataMap.getInt(WEATHER_TYPE_KEY)),
-                            dataMap.getInt(MAX_TEMP_KEY), dataMap.getInt(MIN_TEMP_KEY),
-                            ForecastDataItem.translateWindAngleToDirection(dataMap.getInt(WIND_ANGLE_KEY)),
-                            dataMap.getInt(WIND_SPEED_KEY));
-                    dataDiffers = true;
-                }
-                else
-                {
-                    dataDiffers = dataItem.exchangeDataIfDiffers(
-                            ForecastDataItem.translateWeatherIdToWeatherType(dataMap.getInt(WEATHER_TYPE_KEY)),
-                            dataMap.getInt(MAX_TEMP_KEY), dataMap.getInt(MIN_TEMP_KEY),
-                            ForecastDataItem.translateWindAngleToDirection(dataMap.getInt(WIND_ANGLE_KEY)),
-                            dataMap.getInt(WIND_SPEED_KEY));
-                }
-
+                dataDiffers = showTodayFromForecastDays();
+            }
+            else if (snapshot.hasToday)
+            {
+                dataDiffers = exchangeData(snapshot.weatherId, snapshot.maxTemp, snapshot.minTemp,
+                        snapshot.windAngle, snapshot.windSpeed);
                 if (dataDiffers)
                     updateGuiWithData();
-                return dataDiffers;
+            }
+            Log.d(TAG, "Data item => " + dataItem);
 
+            saveToCache();
+            if (dataDiffers)
+                invalidateIfInteractive();
+        }
+
+        /**
+         * Shows today's day of the forecast window the phone sent last, if it covers today.
+         *
+         * @return whether what's shown changed
+         */
+        private boolean showTodayFromForecastDays()
+        {
+            int today = getTodayInForecastDays();
+            if (today == -1)
+                return false;
+            boolean dataDiffers = exchangeData(forecastDays.getWeatherId(today), forecastDays.getMaxTemp(today),
+                    forecastDays.getMinTemp(today), forecastDays.getWindAngle(today), forecastDays.getWindSpeed(today));
+            if (dataDiffers)
+                updateGuiWithData();
+            return dataDiffers;
+        }
+
+        private int getTodayInForecastDays()
+        {
+            return forecastDays.indexOfDay(getJulianDay(System.currentTimeMillis()));
+        }
+
+        private boolean exchangeData(int weatherId, int maxTemp, int minTemp, int windAngle, int windSpeed)
+        {
+            if (dataItem == null)
+            {
+                dataItem = new ForecastDataItem(ForecastDataItem.translateWeatherIdToWeatherType(weatherId),
+                        maxTemp, minTemp, ForecastDataItem.translateWindAngleToDirection(windAngle), windSpeed);
+                return true;
             }
-            return false;
+            return dataItem.exchangeDataIfDiffers(ForecastDataItem.translateWeatherIdToWeatherType(weatherId),
+                    maxTemp, minTemp, ForecastDataItem.translateWindAngleToDirection(windAngle), windSpeed);
         }
 
+        /**
+         * The local Julian day, the way the phone numbers the days of the forecast.
+         */
+        private int getJulianDay(long millis)
+        {
+            return (int) ((millis + timeZone.getOffset(millis)) / DAY_IN_MILLIS) + EPOCH_JULIAN_DAY;
+        }
 
         private void updateIsMetricIfNeeded(boolean isMetric)
         {
@@ -634,32 +850,40 @@ public class SunshineWatchFace extends CanvasWatchFaceService
                 this.isMetric = isMetric;
                 if (dataItem != null)
                     prepareBottomLine(dataItem);
-                invalidate();
+                invalidateStaticLayer();
+                invalidateIfInteractive();
+            }
+        }
+
+        private void onDataLayerDelivered()
+        {
+            dataFromCache = false;
+            if (!dataLayerDeliveryLogged)
+            {
+                dataLayerDeliveryLogged = true;
+                Log.d(TAG, "Data layer delivered the forecast " + (SystemClock.elapsedRealtime() - engineCreatedAt)
+                        + "ms after engine creation");
             }
         }
 
+        /**
+         * Redraws for a change that only shows in interactive mode. Ambient frames are left to
+         * {@link #onTimeTick()}, leaving ambient mode redraws anyway.
+         */
+        private void invalidateIfInteractive()
+        {
+            if (!isInAmbientMode())
+                invalidate();
+        }
+
         private class SunshineDataListener implements DataApi.DataListener
         {
             @Override
             public void onDataChanged(DataEventBuffer dataEvents)
             {
                 Log.d(TAG, "On data changed");
-                boolean dataDiffers = false;
-                for (DataEvent event : dataEvents)
-                {
-                    if (event.getType() == DataEvent.TYPE_CHANGED)
-                    {
-                        DataItem item = event.getDataItem();
-                        dataDiffers = processItem(item);
-                        if (dataDiffers)
-                            break;
-                        Log.d(TAG, "Data item => " + dataItem);
-                    }
-                }
-
+                snapshotDecoder.submit(dataEvents);
                 dataEvents.release();
-                if (dataDiffers)
-                    invalidate();
             }
         }
 
@@ -669,17 +893,8 @@ public class SunshineWatchFace extends CanvasWatchFaceService
             public void onResult(@NonNull DataItemBuffer dataItems)
             {
                 Log.d(TAG, "On result");
-                boolean dataDiffers = false;
-                for (DataItem item : dataItems)
-                {
-                    if (processItem(item))
-                        dataDiffers = true;
-                    Log.d(TAG, "Data item => " + dataItem);
-                }
-
+                snapshotDecoder.submit(dataItems);
                 dataItems.release();
-                if (dataDiffers)
-                    invalidate();
             }
         }
 
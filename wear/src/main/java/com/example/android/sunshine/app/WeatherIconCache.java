@@ -0,0 +1,80 @@
+package com.example.android.sunshine.app;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+/**
+ * The weather icons at the size the face draws them, decoded and scaled once per layout instead
+ * of every time the weather or the units change.
+ */
+class WeatherIconCache
+{
+    private static final String TAG = WeatherIconCache.class.getSimpleName();
+
+    // Weather types are numbered from 1, the slot for 0 stays empty
+    private static final int WEATHER_TYPE_SLOTS = 9;
+
+    private final Resources resources;
+    private final Bitmap[] icons = new Bitmap[WEATHER_TYPE_SLOTS];
+    private int iconSize;
+
+    WeatherIconCache(Resources resources)
+    {
+        this.resources = resources;
+    }
+
+    /**
+     * Sets the size icons are scaled to, in pixels. Changing it drops the icons decoded so far
+     * and decodes them all at the new size, so switching weather types later doesn't decode
+     * anything.
+     */
+    void setIconSize(int iconSize)
+    {
+        if (iconSize == this.iconSize)
+            return;
+        clear();
+        this.iconSize = iconSize;
+        for (int weatherType = 1; weatherType < WEATHER_TYPE_SLOTS; weatherType++)
+            icons[weatherType] = decode(weatherType);
+        Log.d(TAG, "Decoded the icons at " + iconSize + "px");
+    }
+
+    Bitmap getIcon(@ForecastDataItem.WeatherType int weatherType)
+    {
+        Bitmap icon = icons[weatherType];
+        if (icon == null)
+        {
+            icon = decode(weatherType);
+            icons[weatherType] = icon;
+        }
+        return icon;
+    }
+
+    private Bitmap decode(int weatherType)
+    {
+        Bitmap decoded = BitmapFactory.decodeResource(resources, ForecastDataItem.getWeatherTypeIconRes(weatherType));
+        if (iconSize <= 0 || (decoded.getWidth() == iconSize && decoded.getHeight() == iconSize))
+            return decoded;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, iconSize, iconSize, true);
+        if (scaled != decoded)
+            decoded.recycle();
+        return scaled;
+    }
+
+    /**
+     * Recycles every icon decoded so far.
+     */
+    void clear()
+    {
+        for (int i = 0; i < icons.length; i++)
+        {
+            if (icons[i] != null)
+            {
+                icons[i].recycle();
+                icons[i] = null;
+            }
+        }
+    }
+}
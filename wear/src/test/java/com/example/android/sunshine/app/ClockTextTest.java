@@ -0,0 +1,98 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClockTextTest
+{
+    private static final long HOUR_IN_MILLIS = 60 * 60 * 1000;
+    // 2016-04-24 09:05:03 UTC
+    private static final long MORNING = 1461488703000L;
+    private static final int FRAMES = 100000;
+    // in total, across all the measured frames
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    @Test
+    public void formatsLikeStringFormat()
+    {
+        ClockText clockText = new ClockText();
+        clockText.update(MORNING, 0, true);
+        assertEquals("9:05:03", clockText.toString());
+        clockText.update(MORNING, 0, false);
+        assertEquals("9:05", clockText.toString());
+        clockText.update(MORNING, (int) (14 * HOUR_IN_MILLIS), true);
+        assertEquals("23:05:03", clockText.toString());
+        clockText.update(MORNING, (int) (-10 * HOUR_IN_MILLIS), true);
+        assertEquals("23:05:03", clockText.toString());
+        clockText.update(MORNING, (int) (15 * HOUR_IN_MILLIS), false);
+        assertEquals("0:05", clockText.toString());
+    }
+
+    @Test
+    public void matchesStringFormatAcrossADay()
+    {
+        ClockText clockText = new ClockText();
+        long midnight = MORNING - MORNING % (24 * HOUR_IN_MILLIS);
+        for (int second = 0; second < 24 * 60 * 60; second += 7)
+        {
+            clockText.update(midnight + second * 1000L, 0, true);
+            String expected = String.format("%d:%02d:%02d", second / 3600, second / 60 % 60, second % 60);
+            assertEquals(expected, clockText.toString());
+        }
+    }
+
+    /**
+     * What onDraw does on every frame, apart from the canvas calls, must not create any objects
+     * once warmed up: reading the time zone offset, filling in the clock text and recording the
+     * frame time.
+     */
+    @Test
+    public void drawingAFrameAllocatesNothing()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        Assume.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+        allocations.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        ClockText clockText = new ClockText();
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Berlin");
+        FrameTimeRecorder frameTimes = new FrameTimeRecorder(300);
+        int checksum = 0;
+        // warm up, so what's measured is the compiled code and not the interpreter
+        checksum += drawFrames(clockText, timeZone, frameTimes, FRAMES);
+
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        checksum += drawFrames(clockText, timeZone, frameTimes, FRAMES);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        // using the result keeps the JIT from dropping the frames altogether
+        assertTrue(checksum > 0);
+        // the counter itself may allocate a little on some JVMs, far less than an object every
+        // few frames would
+        assertTrue(FRAMES + " frames allocated " + allocated + " bytes", allocated < MAX_ALLOCATED_BYTES);
+    }
+
+    private static int drawFrames(ClockText clockText, TimeZone timeZone, FrameTimeRecorder frameTimes,
+                                  int frames)
+    {
+        int checksum = 0;
+        for (int frame = 0; frame < frames; frame++)
+        {
+            long frameStart = System.nanoTime();
+            long now = MORNING + frame * 1000L;
+            clockText.update(now, timeZone.getOffset(now), frame % 2 == 0);
+            checksum += clockText.getChars()[clockText.length() - 1];
+            frameTimes.record(System.nanoTime() - frameStart);
+        }
+        return checksum;
+    }
+}
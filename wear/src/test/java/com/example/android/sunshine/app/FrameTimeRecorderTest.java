@@ -0,0 +1,39 @@
+package com.example.android.sunshine.app;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FrameTimeRecorderTest
+{
+    @Test
+    public void computesPercentilesOfTheKeptFrames()
+    {
+        FrameTimeRecorder recorder = new FrameTimeRecorder(100);
+        assertEquals(0, recorder.getPercentileNanos(50));
+        for (int i = 100; i >= 1; i--)
+            recorder.record(i * 1000);
+
+        assertEquals(100, recorder.getTotalFrames());
+        assertEquals(50 * 1000, recorder.getPercentileNanos(50));
+        assertEquals(95 * 1000, recorder.getPercentileNanos(95));
+        assertEquals(100 * 1000, recorder.getPercentileNanos(100));
+    }
+
+    @Test
+    public void keepsOnlyTheMostRecentFrames()
+    {
+        FrameTimeRecorder recorder = new FrameTimeRecorder(10);
+        for (int i = 0; i < 10; i++)
+            recorder.record(1000000);
+        for (int i = 0; i < 10; i++)
+            recorder.record(1000);
+
+        assertEquals(20, recorder.getTotalFrames());
+        assertEquals(1000, recorder.getPercentileNanos(100));
+
+        recorder.reset();
+        assertEquals(0, recorder.getTotalFrames());
+        assertEquals(0, recorder.getPercentileNanos(100));
+    }
+}